@@ -1,12 +1,19 @@
 package ru.flish1.client;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -17,17 +24,35 @@ import ru.flish1.dto.NomenclatureDto;
 import ru.flish1.dto.PaymentStatusResponse;
 import ru.flish1.dto.SuccessResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Клиент для взаимодействия с API 1C
+ * Каждая группа методов API выполняется через свой circuit breaker: при большой доле ошибок или медленных
+ * ответов вызовы прекращаются и сразу завершаются OneCUnavailableException, пока пробные запросы
+ * в полуоткрытом состоянии не покажут, что 1С восстановилась
  */
 @Service
 public class OneCApiClient {
 
     private static final Logger log = LoggerFactory.getLogger(OneCApiClient.class);
 
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    public static final String NOMENCLATURE_CIRCUIT = "one-c-nomenclature";
+    public static final String ORDERS_CIRCUIT = "one-c-orders";
+    public static final String PAYMENT_STATUS_CIRCUIT = "one-c-payment-status";
+    public static final String CASH_PAYMENT_CIRCUIT = "one-c-cash-payment";
+
     private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
 
     @Value("${integration.api.base-url}")
     private String baseUrl;
@@ -35,8 +60,24 @@ public class OneCApiClient {
     @Value("${integration.api.key}")
     private String apiKey;
 
-    public OneCApiClient(RestTemplate restTemplate) {
+    public OneCApiClient(RestTemplate restTemplate, ObjectMapper objectMapper,
+                         CircuitBreakerRegistry circuitBreakerRegistry) {
         this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+    }
+
+    /**
+     * Выполняет вызов 1С через circuit breaker указанной группы методов
+     * Если circuit breaker открыт, запрос не отправляется
+     */
+    private <T> T callOneC(String circuitName, Supplier<T> call) {
+        try {
+            return circuitBreakerRegistry.circuitBreaker(circuitName).executeSupplier(call);
+        } catch (CallNotPermittedException e) {
+            log.warn("Запрос к 1C не выполнен: circuit breaker {} открыт", circuitName);
+            throw new OneCUnavailableException("1С временно недоступна, повторите попытку позже", e);
+        }
     }
 
     /**
@@ -50,32 +91,115 @@ public class OneCApiClient {
     }
 
     /**
-     * Получает список номенклатуры из 1C
+     * Получает номенклатуру из 1C в потоковом режиме
+     * Ответ читается потоковым JSON-парсером, элементы передаются потребителю пачками,
+     * поэтому весь список номенклатуры в памяти не накапливается
+     * Если передан ETag предыдущей загрузки и справочник в 1C не изменился, 1C отвечает 304 без тела
+     * Circuit breaker учитывает только сам запрос до получения статуса ответа: чтение тела и сохранение пачек
+     * в обработчике (транзакции БД) в длительность и ошибки вызова 1C не входят
      *
-     * @return список номенклатуры
+     * @param etag      ETag предыдущей загрузки (If-None-Match) или null
+     * @param chunkSize размер пачки
+     * @param handler   обработчик начала ответа и пачек элементов
+     * @return результат загрузки: признак неизмененного справочника, новый ETag и количество элементов
      */
-    public List<NomenclatureDto> getNomenclature() {
+    public NomenclatureStreamResult streamNomenclature(String etag, int chunkSize, NomenclatureStreamHandler handler) {
         try {
             String url = baseUrl + "/nomenclature";
-            log.info("Запрос номенклатуры из 1C: {}", url);
+            log.info("Потоковый запрос номенклатуры из 1C: {}, If-None-Match: {}", url, etag);
 
-            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<List<NomenclatureDto>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    new ParameterizedTypeReference<List<NomenclatureDto>>() {
-                    }
-            );
+            HttpHeaders headers = createHeaders();
+            if (etag != null) {
+                headers.setIfNoneMatch(etag);
+            }
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(NOMENCLATURE_CIRCUIT);
+            if (!circuitBreaker.tryAcquirePermission()) {
+                log.warn("Запрос к 1C не выполнен: circuit breaker {} открыт", NOMENCLATURE_CIRCUIT);
+                throw new OneCUnavailableException("1С временно недоступна, повторите попытку позже",
+                        CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+            }
+            long startedAt = System.nanoTime();
+            boolean[] recorded = {false};
+            NomenclatureStreamResult result;
+            try {
+                result = restTemplate.execute(
+                        url,
+                        HttpMethod.GET,
+                        request -> request.getHeaders().putAll(headers),
+                        response -> {
+                            // Статус ответа уже проверен обработчиком ошибок RestTemplate: вызов 1C успешен
+                            circuitBreaker.onSuccess(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                            recorded[0] = true;
+                            String responseEtag = response.getHeaders().getETag();
+                            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                                return new NomenclatureStreamResult(true, etag, 0);
+                            }
+                            handler.onStart(responseEtag, parseTotalCount(response.getHeaders().getFirst(TOTAL_COUNT_HEADER)));
+                            int count = readNomenclatureChunks(response.getBody(), chunkSize, handler::onChunk);
+                            return new NomenclatureStreamResult(false, responseEtag, count);
+                        }
+                );
+            } catch (RuntimeException e) {
+                if (!recorded[0]) {
+                    circuitBreaker.onError(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS, e);
+                }
+                throw e;
+            }
 
-            log.info("Получено элементов номенклатуры: {}", response.getBody() != null ? response.getBody().size() : 0);
-            return response.getBody();
+            if (result == null) {
+                throw new RuntimeException("Получен пустой ответ от 1C");
+            }
+            if (result.isNotModified()) {
+                log.info("Номенклатура в 1C не изменилась (304 Not Modified)");
+            } else {
+                log.info("Получено элементов номенклатуры: {}", result.getCount());
+            }
+            return result;
         } catch (RestClientException e) {
             log.error("Ошибка при получении номенклатуры из 1C", e);
             throw new RuntimeException("Не удалось получить номенклатуру из 1C: " + e.getMessage(), e);
         }
     }
 
+    private Integer parseTotalCount(String totalCount) {
+        if (totalCount == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(totalCount.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Некорректный заголовок {}: {}", TOTAL_COUNT_HEADER, totalCount);
+            return null;
+        }
+    }
+
+    /**
+     * Читает JSON-массив номенклатуры поэлементно и передает элементы пачками
+     */
+    private int readNomenclatureChunks(InputStream body, int chunkSize,
+                                       Consumer<List<NomenclatureDto>> chunkConsumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Ожидался JSON-массив номенклатуры");
+            }
+
+            int count = 0;
+            List<NomenclatureDto> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(objectMapper.readValue(parser, NomenclatureDto.class));
+                count++;
+                if (chunk.size() >= chunkSize) {
+                    chunkConsumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+            }
+            return count;
+        }
+    }
+
     /**
      * Отправляет данные о выполненном заказе в 1C
      *
@@ -88,16 +212,19 @@ public class OneCApiClient {
             log.info("Отправка выполненного заказа в 1C: {}", url);
             log.debug("Данные заказа: {}", payload);
 
-            HttpEntity<CompletedOrderPayload> entity = new HttpEntity<>(payload, createHeaders());
-            ResponseEntity<SuccessResponse> response = restTemplate.exchange(
+            // Тело сериализуется заранее, чтобы запрос ушел с Content-Length, а не chunked
+            HttpEntity<byte[]> entity = new HttpEntity<>(objectMapper.writeValueAsBytes(payload), createHeaders());
+            ResponseEntity<SuccessResponse> response = callOneC(ORDERS_CIRCUIT, () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     entity,
                     SuccessResponse.class
-            );
+            ));
 
             log.info("Заказ успешно отправлен в 1C. Документ: {}", response.getBody() != null ? response.getBody().getDocument1cNumber() : "N/A");
             return response.getBody();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Не удалось сформировать данные заказа для 1C: " + e.getMessage(), e);
         } catch (RestClientException e) {
             log.error("Ошибка при отправке заказа в 1C", e);
             throw new RuntimeException("Не удалось отправить заказ в 1C: " + e.getMessage(), e);
@@ -116,12 +243,12 @@ public class OneCApiClient {
             log.info("Проверка статуса оплаты документа в 1C: {}", url);
 
             HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<PaymentStatusResponse> response = restTemplate.exchange(
+            ResponseEntity<PaymentStatusResponse> response = callOneC(PAYMENT_STATUS_CIRCUIT, () -> restTemplate.exchange(
                     url,
                     HttpMethod.GET,
                     entity,
                     PaymentStatusResponse.class
-            );
+            ));
 
             log.info("Статус оплаты документа {}: isPaid={}", documentId, 
                     response.getBody() != null ? response.getBody().getIsPaid() : "N/A");
@@ -144,12 +271,12 @@ public class OneCApiClient {
             log.info("Подтверждение наличной оплаты документа в 1C: {}", url);
 
             HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<PaymentStatusResponse> response = restTemplate.exchange(
+            ResponseEntity<PaymentStatusResponse> response = callOneC(CASH_PAYMENT_CIRCUIT, () -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     entity,
                     PaymentStatusResponse.class
-            );
+            ));
 
             log.info("Наличная оплата документа {} подтверждена в 1C", documentId);
             return response.getBody();
@@ -158,4 +285,51 @@ public class OneCApiClient {
             throw new RuntimeException("Не удалось подтвердить наличную оплату в 1C: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Обработчик потоковой загрузки номенклатуры
+     */
+    public interface NomenclatureStreamHandler {
+
+        /**
+         * Вызывается перед первой пачкой, если 1C вернула справочник (не 304)
+         *
+         * @param etag       ETag ответа или null
+         * @param totalCount общее количество элементов из заголовка X-Total-Count или null
+         */
+        default void onStart(String etag, Integer totalCount) {
+        }
+
+        /**
+         * Обрабатывает очередную пачку элементов
+         */
+        void onChunk(List<NomenclatureDto> chunk);
+    }
+
+    /**
+     * Результат потоковой загрузки номенклатуры
+     */
+    public static class NomenclatureStreamResult {
+        private final boolean notModified;
+        private final String etag;
+        private final int count;
+
+        public NomenclatureStreamResult(boolean notModified, String etag, int count) {
+            this.notModified = notModified;
+            this.etag = etag;
+            this.count = count;
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
 }
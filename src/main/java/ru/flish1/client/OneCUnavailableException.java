@@ -0,0 +1,11 @@
+package ru.flish1.client;
+
+/**
+ * 1С временно недоступна: circuit breaker открыт, запрос не выполнялся
+ */
+public class OneCUnavailableException extends RuntimeException {
+
+    public OneCUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
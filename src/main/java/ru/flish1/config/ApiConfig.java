@@ -1,12 +1,27 @@
 package ru.flish1.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 /**
  * Конфигурация для API клиента
  */
@@ -16,9 +31,80 @@ public class ApiConfig {
     @Value("${integration.api.key}")
     private String apiKey;
 
+    @Value("${integration.api.pool.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${integration.api.pool.max-total:50}")
+    private int maxTotal;
+
+    @Value("${integration.api.pool.idle-eviction:PT30S}")
+    private Duration idleEviction;
+
+    @Value("${integration.api.pool.time-to-live:PT5M}")
+    private Duration timeToLive;
+
+    @Value("${integration.api.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    @Value("${integration.api.connection-request-timeout:PT5S}")
+    private Duration connectionRequestTimeout;
+
+    @Value("${integration.api.read-timeout:PT30S}")
+    private Duration readTimeout;
+
+    /**
+     * Пул соединений к API 1C с ограничением на маршрут и таймаутами установки соединения и чтения
+     */
+    @Bean
+    public PoolingHttpClientConnectionManager oneCConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxPerRoute)
+                .setMaxConnTotal(maxTotal)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        .build())
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(Timeout.of(readTimeout))
+                        .setSoKeepAlive(true)
+                        .build())
+                .build();
+    }
+
+    /**
+     * HTTP-клиент поверх пула: повторно использует keep-alive соединения и в фоне закрывает
+     * простаивающие и просроченные соединения
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient oneCHttpClient(PoolingHttpClientConnectionManager oneCConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(oneCConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+
+    /**
+     * RestTemplate собирается через RestTemplateBuilder, поэтому запросы к 1C попадают в метрики http.client.requests
+     */
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient oneCHttpClient) {
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(oneCHttpClient))
+                .build();
+    }
+
+    /**
+     * Метрики пула соединений: занятые, свободные, ожидающие и максимум соединений (httpcomponents.httpclient.pool.*)
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public MeterBinder oneCConnectionPoolMetrics(PoolingHttpClientConnectionManager oneCConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(oneCConnectionManager, "one-c");
     }
 
     /**
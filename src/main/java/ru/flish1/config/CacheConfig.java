@@ -0,0 +1,14 @@
+package ru.flish1.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Кэш справочных данных (Caffeine)
+ * Имена кэшей и их параметры задаются в spring.cache.*; кэши создаются при старте,
+ * поэтому Actuator публикует для них метрики cache.gets (hit/miss), cache.puts и cache.evictions
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+}
@@ -8,6 +8,7 @@ import ru.flish1.entity.EquipmentType;
 import ru.flish1.entity.UserRole;
 import ru.flish1.repository.EquipmentTypeRepository;
 import ru.flish1.repository.UserRoleRepository;
+import ru.flish1.service.ReferenceDataService;
 import ru.flish1.service.UserService;
 
 /**
@@ -21,12 +22,15 @@ public class DataInitializer implements CommandLineRunner {
     private final UserRoleRepository userRoleRepository;
     private final UserService userService;
     private final EquipmentTypeRepository equipmentTypeRepository;
+    private final ReferenceDataService referenceDataService;
 
     public DataInitializer(UserRoleRepository userRoleRepository, UserService userService,
-                           EquipmentTypeRepository equipmentTypeRepository) {
+                           EquipmentTypeRepository equipmentTypeRepository,
+                           ReferenceDataService referenceDataService) {
         this.userRoleRepository = userRoleRepository;
         this.userService = userService;
         this.equipmentTypeRepository = equipmentTypeRepository;
+        this.referenceDataService = referenceDataService;
     }
 
     @Override
@@ -51,6 +55,9 @@ public class DataInitializer implements CommandLineRunner {
         createEquipmentTypeIfNotExists("Телефон/Смартфон", false);
         createEquipmentTypeIfNotExists("Планшет", false);
         createEquipmentTypeIfNotExists("Другое", true); // Тип "Другое" для пользовательского ввода
+
+        // Справочники могли быть прочитаны до завершения инициализации
+        referenceDataService.evictAll();
     }
 
     private void createUserIfNotExists(
@@ -0,0 +1,60 @@
+package ru.flish1.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Перевод резервов, созданных до списания остатка при резервировании
+ * Раньше резерв не уменьшал parts.quantity, а теперь снятие резерва возвращает его количество на склад.
+ * Чтобы старые активные резервы не вернули на склад то, что с него не списывалось, при старте их количество
+ * один раз вычитается из остатка запчастей. Признаком служит reserve_parts.stock_reserved: у старых строк
+ * он пустой, после перевода заполнен, поэтому повторный запуск ничего не меняет
+ */
+@Component
+public class ReservationStockMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationStockMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * EntityManagerFactory нужна только для порядка инициализации: колонка stock_reserved
+     * к этому моменту уже добавлена Hibernate
+     */
+    public ReservationStockMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrateLegacyReservations() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Map<String, Object>> legacy = jdbcTemplate.queryForList(
+                    "SELECT part_id, SUM(quantity) AS quantity FROM reserve_parts " +
+                            "WHERE stock_reserved IS NULL AND status = 'active' AND quantity IS NOT NULL " +
+                            "GROUP BY part_id ORDER BY part_id");
+            for (Map<String, Object> row : legacy) {
+                jdbcTemplate.update("UPDATE parts SET quantity = COALESCE(quantity, 0) - ? WHERE id = ?",
+                        ((Number) row.get("quantity")).intValue(), row.get("part_id"));
+            }
+
+            int migrated = jdbcTemplate.update(
+                    "UPDATE reserve_parts SET stock_reserved = (status = 'active') WHERE stock_reserved IS NULL");
+            if (migrated > 0) {
+                log.info("Резервы без списания остатка переведены: {}, остаток уменьшен у запчастей: {}",
+                        migrated, legacy.size());
+            }
+        });
+    }
+}
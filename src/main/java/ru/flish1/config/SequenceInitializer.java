@@ -0,0 +1,73 @@
+package ru.flish1.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Перевод последовательностей ID за уже существующие записи
+ * Заявки, резервирования, запчасти, услуги и клиенты раньше получали ID через IDENTITY,
+ * а теперь берут их из последовательностей с пулом по 50 значений. В существующей БД новые
+ * последовательности начинаются с 1, поэтому при старте они сдвигаются за максимальный ID таблицы
+ */
+@Component
+public class SequenceInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(SequenceInitializer.class);
+
+    /**
+     * Размер пула значений, должен совпадать с allocationSize в @SequenceGenerator сущностей
+     */
+    private static final int ALLOCATION_SIZE = 50;
+
+    /**
+     * Таблица -> последовательность, из которой берутся ее ID
+     */
+    private static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put("requests", "requests_seq");
+        SEQUENCES.put("reserve_parts", "reserve_parts_seq");
+        SEQUENCES.put("parts", "parts_seq");
+        SEQUENCES.put("services", "services_seq");
+        SEQUENCES.put("customers", "customers_seq");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * EntityManagerFactory нужна только для порядка инициализации: схема (и последовательности)
+     * к этому моменту уже обновлены Hibernate
+     */
+    public SequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        SEQUENCES.forEach(this::alignSequence);
+    }
+
+    private void alignSequence(String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                Long.class, sequence);
+
+        // Оптимизатор pooled считает значение последовательности верхней границей пула,
+        // поэтому первое значение должно быть не меньше maxId + ALLOCATION_SIZE
+        long required = maxId + ALLOCATION_SIZE;
+        if (nextValue != null && nextValue >= required) {
+            return;
+        }
+
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + required);
+        log.info("Последовательность {} перезапущена с {} (максимальный ID в {}: {})", sequence, required, table, maxId);
+    }
+}
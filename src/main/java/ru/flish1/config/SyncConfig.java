@@ -0,0 +1,46 @@
+package ru.flish1.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Конфигурация фоновой синхронизации с 1C
+ */
+@Configuration
+@EnableScheduling
+public class SyncConfig {
+
+    /**
+     * Отдельный пул для синхронизации, чтобы долгая синхронизация не занимала потоки Tomcat
+     */
+    @Bean(name = "syncExecutor")
+    public ThreadPoolTaskExecutor syncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        // Одно место в очереди: задание, запущенное сразу после завершения предыдущего, дождется,
+        // пока поток пула освободится; одновременный запуск двух заданий исключает SyncJobService
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("sync-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Пул для параллельной проверки оплаты в 1С; размер пула ограничивает число одновременных запросов
+     */
+    @Bean(name = "paymentPollExecutor")
+    public ThreadPoolTaskExecutor paymentPollExecutor(@Value("${integration.payment-poll.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("payment-poll-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
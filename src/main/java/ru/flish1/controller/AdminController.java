@@ -0,0 +1,47 @@
+package ru.flish1.controller;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import ru.flish1.service.ClusterLockService;
+import ru.flish1.service.NomenclatureSyncScheduler;
+import ru.flish1.service.OneCStatusService;
+import ru.flish1.service.SyncJobService;
+
+/**
+ * Контроллер служебных страниц администратора
+ */
+@Controller
+@RequestMapping("/admin")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+
+    private final ClusterLockService clusterLockService;
+    private final SyncJobService syncJobService;
+    private final NomenclatureSyncScheduler nomenclatureSyncScheduler;
+    private final OneCStatusService oneCStatusService;
+
+    public AdminController(ClusterLockService clusterLockService, SyncJobService syncJobService,
+                           NomenclatureSyncScheduler nomenclatureSyncScheduler, OneCStatusService oneCStatusService) {
+        this.clusterLockService = clusterLockService;
+        this.syncJobService = syncJobService;
+        this.nomenclatureSyncScheduler = nomenclatureSyncScheduler;
+        this.oneCStatusService = oneCStatusService;
+    }
+
+    /**
+     * Состояние плановой синхронизации: расписание, связь с 1С, блокировка в БД и последний запуск
+     */
+    @GetMapping("/sync")
+    public String syncStatus(Model model) {
+        model.addAttribute("schedule", nomenclatureSyncScheduler.getScheduleDescription());
+        model.addAttribute("nodeId", clusterLockService.getNodeId());
+        model.addAttribute("circuitStatuses", oneCStatusService.getCircuitStatuses());
+        clusterLockService.getLock(SyncJobService.NOMENCLATURE_SYNC_LOCK)
+                .ifPresent(lock -> model.addAttribute("lock", lock));
+        syncJobService.getLastJob().ifPresent(job -> model.addAttribute("syncJob", job));
+        return "admin/sync";
+    }
+}
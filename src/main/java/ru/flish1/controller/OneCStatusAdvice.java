@@ -0,0 +1,25 @@
+package ru.flish1.controller;
+
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import ru.flish1.service.OneCStatusService;
+
+import java.util.List;
+
+/**
+ * Добавляет во все страницы признак деградации связи с 1С для баннера в шаблонах
+ */
+@ControllerAdvice(assignableTypes = {WebController.class, RequestController.class, AdminController.class})
+public class OneCStatusAdvice {
+
+    private final OneCStatusService oneCStatusService;
+
+    public OneCStatusAdvice(OneCStatusService oneCStatusService) {
+        this.oneCStatusService = oneCStatusService;
+    }
+
+    @ModelAttribute("oneCUnavailableFunctions")
+    public List<String> oneCUnavailableFunctions() {
+        return oneCStatusService.getUnavailableFunctions();
+    }
+}
@@ -12,15 +12,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import ru.flish1.client.OneCApiClient;
 import ru.flish1.dto.PaymentStatusResponse;
-import ru.flish1.entity.Part;
 import ru.flish1.entity.Request;
 import ru.flish1.entity.ReservePart;
 import ru.flish1.repository.CustomerRepository;
-import ru.flish1.repository.PartRepository;
 import ru.flish1.repository.ReservePartRepository;
 import ru.flish1.repository.ServiceRepository;
 import ru.flish1.repository.UserRepository;
 import ru.flish1.service.OrderService;
+import ru.flish1.service.PartReservationService;
+import ru.flish1.service.PaymentStatusCache;
 import ru.flish1.service.RequestService;
 import ru.flish1.service.UserService;
 
@@ -42,24 +42,28 @@ public class RequestController {
     private final UserService userService;
     private final ReservePartRepository reservePartRepository;
     private final OrderService orderService;
-    private final PartRepository partRepository;
     private final ServiceRepository serviceRepository;
     private final OneCApiClient oneCApiClient;
+    private final PaymentStatusCache paymentStatusCache;
+    private final PartReservationService partReservationService;
 
     public RequestController(RequestService requestService, CustomerRepository customerRepository,
                              UserRepository userRepository, UserService userService,
                              ReservePartRepository reservePartRepository,
-                             OrderService orderService, PartRepository partRepository,
-                             ServiceRepository serviceRepository, OneCApiClient oneCApiClient) {
+                             OrderService orderService,
+                             ServiceRepository serviceRepository, OneCApiClient oneCApiClient,
+                             PaymentStatusCache paymentStatusCache,
+                             PartReservationService partReservationService) {
         this.requestService = requestService;
         this.customerRepository = customerRepository;
         this.userRepository = userRepository;
         this.userService = userService;
         this.reservePartRepository = reservePartRepository;
         this.orderService = orderService;
-        this.partRepository = partRepository;
         this.serviceRepository = serviceRepository;
         this.oneCApiClient = oneCApiClient;
+        this.paymentStatusCache = paymentStatusCache;
+        this.partReservationService = partReservationService;
     }
 
 
@@ -179,24 +183,9 @@ public class RequestController {
             }
 
             // Создаем резервирования запчастей, если они указаны
+            // Остаток списывается атомарно; при нехватке любой запчасти ничего не резервируется
             if (partIds != null && quantities != null) {
-                for (int i = 0; i < partIds.size(); i++) {
-                    Integer partId = partIds.get(i);
-                    Integer quantity = i < quantities.size() ? quantities.get(i) : 0;
-
-                    if (partId != null && quantity != null && quantity > 0) {
-                        Part part = partRepository.findById(partId)
-                                .orElseThrow(() -> new IllegalArgumentException("Запчасть не найдена: " + partId));
-
-                        ReservePart reservePart = new ReservePart();
-                        reservePart.setRequest(request);
-                        reservePart.setPart(part);
-                        reservePart.setQuantity(quantity);
-                        reservePart.setUsedQuantity(0);
-                        reservePart.setStatus("active");
-                        reservePartRepository.save(reservePart);
-                    }
-                }
+                partReservationService.reserve(request, partIds, quantities, false);
                 redirectAttributes.addFlashAttribute("successMessage", "Запчасти успешно зарезервированы");
             } else {
                 redirectAttributes.addFlashAttribute("errorMessage", "Необходимо указать хотя бы одну запчасть");
@@ -212,7 +201,7 @@ public class RequestController {
 
 
     /**
-     * Завершение заявки с отправкой заказа в 1С (in_progress -> completed)
+     * Завершение заявки с постановкой заказа в очередь на отправку в 1С (in_progress -> completed)
      */
     @PostMapping("/{id}/complete")
     @PreAuthorize("hasRole('ENGINEER')")
@@ -250,68 +239,36 @@ public class RequestController {
                 }
             }
 
-            // Удаляем резервирования, которые нужно удалить
+            // Удаляем резервирования, которые нужно удалить (остаток возвращается на склад)
             if (removeReservePartIds != null) {
-                for (Long reservePartId : removeReservePartIds) {
-                    if (reservePartId != null) {
-                        reservePartRepository.deleteById(reservePartId);
-                    }
-                }
+                partReservationService.release(removeReservePartIds);
             }
 
-            // Добавляем новые резервирования
+            // Добавляем новые резервирования (новые резервирования сразу используются)
             if (newPartIds != null && newPartQuantities != null) {
-                for (int i = 0; i < newPartIds.size(); i++) {
-                    Integer partId = newPartIds.get(i);
-                    Integer quantity = i < newPartQuantities.size() ? newPartQuantities.get(i) : 0;
-
-                    if (partId != null && quantity != null && quantity > 0) {
-                        Part part = partRepository.findById(partId)
-                                .orElseThrow(() -> new IllegalArgumentException("Запчасть не найдена: " + partId));
-
-                        ReservePart reservePart = new ReservePart();
-                        reservePart.setRequest(request);
-                        reservePart.setPart(part);
-                        reservePart.setQuantity(quantity);
-                        reservePart.setUsedQuantity(quantity); // Новые резервирования сразу используются
-                        reservePart.setStatus("active");
-                        reservePartRepository.save(reservePart);
-                    }
-                }
+                partReservationService.reserve(request, newPartIds, newPartQuantities, true);
             }
 
-            // Отправляем заказ в 1С (включая использованные запчасти из резервирований)
-            // Материалы берутся из зарезервированных запчастей (использованные)
-            OrderService.OrderResult result = orderService.createAndSendOrderFromRequest(
+            // Завершаем заявку и ставим заказ в очередь на отправку в 1С
+            // (включая использованные запчасти из резервирований)
+            orderService.completeRequestWithOrder(
                     id,
                     sourceOrderId,
                     serviceIds != null ? serviceIds : new ArrayList<>(),
                     serviceQuantities != null ? serviceQuantities : new ArrayList<>(),
-                    new ArrayList<>(), // Материалы не передаются отдельно - они берутся из резервирований
-                    new ArrayList<>(),
                     paymentMethod
             );
 
-            if (result.isSuccess()) {
-                // Завершаем заявку с сохранением информации о платеже
-                requestService.completeRequestWithPayment(id, paymentMethod, result.getDocument1cId());
-                
-                // Если оплата наличными, сразу помечаем как оплаченную (инженер принял деньги)
-                // Для других способов оплаты нужно проверить оплату через 1С
-                if ("cash".equals(paymentMethod)) {
-                    redirectAttributes.addFlashAttribute("successMessage",
-                            "Заявка завершена. Заказ успешно отправлен в 1С. Документ: " + result.getDocument1cNumber() + 
-                            ". Способ оплаты: наличные. Подтвердите получение оплаты.");
-                } else {
-                    redirectAttributes.addFlashAttribute("successMessage",
-                            "Заявка завершена. Заказ успешно отправлен в 1С. Документ: " + result.getDocument1cNumber() + 
-                            ". Ожидается подтверждение оплаты.");
-                }
+            // Если оплата наличными, инженер подтверждает получение оплаты
+            // Для других способов оплаты нужно проверить оплату через 1С
+            if ("cash".equals(paymentMethod)) {
+                redirectAttributes.addFlashAttribute("successMessage",
+                        "Заявка завершена. Заказ поставлен в очередь на отправку в 1С. " +
+                        "Способ оплаты: наличные. Подтвердите получение оплаты.");
             } else {
-                // Если отправка в 1С не удалась, всё равно завершаем заявку
-                requestService.completeRequestWithPayment(id, paymentMethod, null);
-                redirectAttributes.addFlashAttribute("errorMessage",
-                        "Заявка завершена, но ошибка при отправке заказа в 1С: " + result.getErrorMessage());
+                redirectAttributes.addFlashAttribute("successMessage",
+                        "Заявка завершена. Заказ поставлен в очередь на отправку в 1С. " +
+                        "Ожидается подтверждение оплаты.");
             }
 
             return "redirect:/requests/" + id;
@@ -370,8 +327,8 @@ public class RequestController {
                 return "redirect:/requests/" + id;
             }
 
-            // Запрос в 1С для проверки статуса оплаты
-            PaymentStatusResponse paymentStatus = oneCApiClient.checkPaymentStatus(request.getDocument1cId());
+            // Запрос в 1С для проверки статуса оплаты (через кэш, одновременные проверки объединяются)
+            PaymentStatusResponse paymentStatus = paymentStatusCache.getPaymentStatus(request.getDocument1cId());
 
             if (paymentStatus != null && Boolean.TRUE.equals(paymentStatus.getIsPaid())) {
                 // Оплата подтверждена - переводим в статус "paid"
@@ -393,7 +350,8 @@ public class RequestController {
 
     /**
      * Подтверждение получения наличной оплаты инженером
-     * Отправляет запрос в 1С для подтверждения наличной оплаты
+     * Отправляет запрос в 1С для подтверждения наличной оплаты. Если заказ еще не передан в 1С
+     * (документа 1С нет) или 1С не приняла подтверждение, оно отправляется позже OrderOutboxDispatcher
      */
     @PostMapping("/{id}/confirm-cash-payment")
     @PreAuthorize("hasRole('ENGINEER')")
@@ -416,21 +374,33 @@ public class RequestController {
             }
 
             // Отправляем запрос в 1С для подтверждения наличной оплаты
+            boolean sentTo1c = false;
             if (request.getDocument1cId() != null) {
                 try {
                     PaymentStatusResponse paymentResponse = oneCApiClient.confirmCashPayment(request.getDocument1cId());
+                    paymentStatusCache.put(request.getDocument1cId(), paymentResponse);
+                    sentTo1c = true;
                     log.info("Наличная оплата подтверждена в 1С для документа {}: {}", 
                             request.getDocument1cId(), paymentResponse != null ? paymentResponse.getMessage() : "OK");
                 } catch (Exception e) {
+                    // Подтверждение будет отправлено повторно в фоне
                     log.warn("Не удалось отправить подтверждение наличной оплаты в 1С: {}", e.getMessage());
-                    // Продолжаем, даже если не удалось отправить в 1С
                 }
             }
 
-            // Переводим в статус "paid"
-            requestService.markAsPaid(id);
-            redirectAttributes.addFlashAttribute("successMessage", 
-                    "Получение наличной оплаты подтверждено. Информация отправлена в 1С. Заявка переведена в статус 'Оплачена'.");
+            // Переводим в статус "paid"; неотправленное подтверждение остается в очереди на отправку
+            requestService.confirmCashPayment(id, sentTo1c);
+            String message;
+            if (sentTo1c) {
+                message = "Получение наличной оплаты подтверждено. Информация отправлена в 1С. Заявка переведена в статус 'Оплачена'.";
+            } else if (request.getDocument1cId() == null) {
+                message = "Получение наличной оплаты подтверждено. Заявка переведена в статус 'Оплачена'. "
+                        + "Заказ ещё не передан в 1С: подтверждение оплаты будет отправлено в 1С после его передачи.";
+            } else {
+                message = "Получение наличной оплаты подтверждено. Заявка переведена в статус 'Оплачена'. "
+                        + "Отправить подтверждение в 1С не удалось, оно будет отправлено повторно автоматически.";
+            }
+            redirectAttributes.addFlashAttribute("successMessage", message);
 
             return "redirect:/requests/" + id;
         } catch (Exception e) {
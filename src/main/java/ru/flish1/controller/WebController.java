@@ -1,36 +1,56 @@
 package ru.flish1.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.flish1.dto.CatalogPartItem;
+import ru.flish1.dto.CatalogServiceItem;
+import ru.flish1.dto.CustomerSummary;
+import ru.flish1.dto.RequestFilter;
+import ru.flish1.dto.RequestListItem;
 import ru.flish1.entity.Customer;
 import ru.flish1.entity.EquipmentType;
-import ru.flish1.entity.Part;
+import ru.flish1.entity.OrderOutbox;
 import ru.flish1.entity.PartType;
 import ru.flish1.entity.Request;
 import ru.flish1.entity.ReservePart;
-import ru.flish1.entity.ServiceEntity;
 import ru.flish1.entity.User;
 import ru.flish1.repository.CustomerRepository;
-import ru.flish1.repository.EquipmentTypeRepository;
-import ru.flish1.repository.PartRepository;
-import ru.flish1.repository.PartTypeRepository;
+import ru.flish1.repository.OrderOutboxRepository;
 import ru.flish1.repository.ReservePartRepository;
-import ru.flish1.repository.ServiceRepository;
+import ru.flish1.service.CatalogSnapshotService;
+import ru.flish1.service.CustomerResolver;
+import ru.flish1.service.OneCStatusService;
+import ru.flish1.service.PartReservationService;
+import ru.flish1.service.ReferenceDataService;
+import ru.flish1.service.RequestSearchService;
 import ru.flish1.service.RequestService;
-import ru.flish1.service.SyncService;
+import ru.flish1.service.SyncJob;
+import ru.flish1.service.SyncJobService;
 import ru.flish1.service.UserService;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -41,55 +61,43 @@ public class WebController {
 
     private static final Logger log = LoggerFactory.getLogger(WebController.class);
 
+    private static final int SEARCH_PAGE_SIZE = 20;
+
     private final CustomerRepository customerRepository;
-    private final SyncService syncService;
+    private final SyncJobService syncJobService;
     private final RequestService requestService;
     private final UserService userService;
-    private final PartRepository partRepository;
-    private final PartTypeRepository partTypeRepository;
     private final ReservePartRepository reservePartRepository;
-    private final ServiceRepository serviceRepository;
-    private final EquipmentTypeRepository equipmentTypeRepository;
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final PartReservationService partReservationService;
+    private final CustomerResolver customerResolver;
+    private final RequestSearchService requestSearchService;
+    private final ReferenceDataService referenceDataService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final OneCStatusService oneCStatusService;
 
     public WebController(CustomerRepository customerRepository,
-                         SyncService syncService, RequestService requestService, UserService userService,
-                         PartRepository partRepository, PartTypeRepository partTypeRepository,
-                         ReservePartRepository reservePartRepository, ServiceRepository serviceRepository,
-                         EquipmentTypeRepository equipmentTypeRepository) {
+                         SyncJobService syncJobService, RequestService requestService, UserService userService,
+                         ReservePartRepository reservePartRepository,
+                         OrderOutboxRepository orderOutboxRepository,
+                         PartReservationService partReservationService,
+                         CustomerResolver customerResolver,
+                         RequestSearchService requestSearchService,
+                         ReferenceDataService referenceDataService,
+                         CatalogSnapshotService catalogSnapshotService,
+                         OneCStatusService oneCStatusService) {
         this.customerRepository = customerRepository;
-        this.syncService = syncService;
+        this.syncJobService = syncJobService;
         this.requestService = requestService;
         this.userService = userService;
-        this.partRepository = partRepository;
-        this.partTypeRepository = partTypeRepository;
         this.reservePartRepository = reservePartRepository;
-        this.serviceRepository = serviceRepository;
-        this.equipmentTypeRepository = equipmentTypeRepository;
-    }
-
-    /**
-     * Вспомогательный метод для поиска клиента по customerId
-     * customerId может быть как phoneNumber, так и ID клиента (строка)
-     */
-    private Optional<Customer> findCustomerByIdOrPhone(String customerId) {
-        if (customerId == null) {
-            return Optional.empty();
-        }
-
-        // Сначала пытаемся найти по номеру телефона
-        Optional<Customer> customer = customerRepository.findByPhoneNumber(customerId);
-        if (customer.isPresent()) {
-            return customer;
-        }
-
-        // Если не найдено по телефону, пытаемся найти по ID
-        try {
-            Integer customerIdInt = Integer.parseInt(customerId);
-            return customerRepository.findById(customerIdInt);
-        } catch (NumberFormatException e) {
-            // customerId не является числом, возвращаем пустой Optional
-            return Optional.empty();
-        }
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.partReservationService = partReservationService;
+        this.customerResolver = customerResolver;
+        this.requestSearchService = requestSearchService;
+        this.referenceDataService = referenceDataService;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.oneCStatusService = oneCStatusService;
     }
 
     /**
@@ -104,35 +112,63 @@ public class WebController {
      * Страница со списком номенклатуры (услуг и запчастей)
      */
     @GetMapping("/nomenclature")
-    public String nomenclature(Model model) {
-        List<ServiceEntity> servicesList = serviceRepository.findAll();
-        List<Part> partsList = partRepository.findAll();
-        model.addAttribute("servicesList", servicesList);
-        model.addAttribute("partsList", partsList);
+    public String nomenclature(Model model, WebRequest webRequest, HttpServletResponse response) {
+        CatalogSnapshotService.CatalogSnapshot catalog = catalogSnapshotService.getSnapshot();
+        Optional<SyncJob> syncJob = syncJobService.getLastJob();
+        // Пока идет синхронизация, ход задания на странице меняется постоянно: страница не кэшируется
+        boolean syncRunning = syncJob.map(SyncJob::isRunning).orElse(false);
+        if (!syncRunning && checkNotModified(webRequest, response, model, "nomenclature", catalog.getVersion(),
+                Arrays.toString(reservePartRepository.findActiveState().get(0)),
+                syncJob.map(job -> job.getId() + ":" + job.getStatus()).orElse(""),
+                // Баннер недоступности 1С (OneCStatusAdvice) меняется при открытии и закрытии circuit breaker'ов
+                oneCStatusService.getUnavailableFunctions())) {
+            return null;
+        }
+
+        model.addAttribute("servicesList", catalog.getServices());
+        model.addAttribute("partsList", catalog.getParts());
+        model.addAttribute("reservedByPart", partReservationService.getReservedQuantities());
+        syncJob.ifPresent(job -> model.addAttribute("syncJob", job));
         return "nomenclature";
     }
 
     /**
-     * Синхронизация номенклатуры из 1C
+     * Запуск синхронизации номенклатуры из 1C в фоне
+     * Запрос сразу возвращается, ход синхронизации отображается на странице номенклатуры
      */
     @PostMapping("/nomenclature/sync")
-    public String syncNomenclature(RedirectAttributes redirectAttributes) {
+    public String syncNomenclature(RedirectAttributes redirectAttributes, Authentication authentication) {
         try {
-            syncService.syncNomenclature();
-            redirectAttributes.addFlashAttribute("successMessage", "Номенклатура успешно синхронизирована из 1C");
+            SyncJob job = syncJobService.startNomenclatureSync(authentication.getName());
+            redirectAttributes.addFlashAttribute("successMessage", "Синхронизация номенклатуры из 1C запущена (задание " + job.getId() + ")");
         } catch (Exception e) {
-            log.error("Ошибка при синхронизации номенклатуры", e);
-            redirectAttributes.addFlashAttribute("errorMessage", "Ошибка при синхронизации: " + e.getMessage());
+            log.error("Ошибка при запуске синхронизации номенклатуры", e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Ошибка при запуске синхронизации: " + e.getMessage());
         }
         return "redirect:/nomenclature";
     }
 
+    /**
+     * Статус задания синхронизации номенклатуры (JSON)
+     */
+    @GetMapping("/nomenclature/sync/{jobId}")
+    @ResponseBody
+    public ResponseEntity<SyncJob> syncJobStatus(@PathVariable String jobId) {
+        return syncJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Страница со списком контрагентов
      */
     @GetMapping("/customers")
-    public String customers(Model model) {
-        List<Customer> customerList = customerRepository.findAll();
+    public String customers(Model model, WebRequest webRequest, HttpServletResponse response) {
+        if (checkNotModified(webRequest, response, model, "customers",
+                Arrays.toString(customerRepository.findListState().get(0)))) {
+            return null;
+        }
+        List<CustomerSummary> customerList = customerRepository.findAllSummaries();
         model.addAttribute("customerList", customerList);
         return "customers";
     }
@@ -190,33 +226,68 @@ public class WebController {
     }
 
     /**
-     * Список всех заявок
+     * Список заявок постранично (новые сначала) с фильтром по статусу, инженеру,
+     * типу оборудования, клиенту и периоду создания
      * Заказ отправляется в 1C, но не хранится в БД
      */
     @GetMapping("/requests")
-    public String listRequests(Model model, Authentication authentication) {
-        List<Request> requests = requestService.getAllRequests();
+    public String listRequests(
+            @ModelAttribute("filter") RequestFilter filter,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "size", defaultValue = "" + RequestService.DEFAULT_PAGE_SIZE) int size,
+            Model model, Authentication authentication) {
+        RequestService.RequestPage page = requestService.getRequestPage(filter, after, before, size);
+        List<RequestListItem> requests = page.getItems();
 
         // Загружаем клиентов для каждой заявки
         // customerId может быть как phoneNumber, так и ID клиента (строка)
-        java.util.Map<Integer, Customer> requestIdToCustomerMap = new java.util.HashMap<>();
-        for (Request request : requests) {
-            findCustomerByIdOrPhone(request.getCustomerId())
-                    .ifPresent(customer -> requestIdToCustomerMap.put(request.getId(), customer));
+        // Клиенты всех заявок загружаются пакетно, а не отдельными запросами на каждую строку
+        Map<String, CustomerSummary> customersById = customerResolver.resolveAll(
+                requests.stream().map(RequestListItem::getCustomerId).toList());
+        Map<Integer, CustomerSummary> requestIdToCustomerMap = new HashMap<>();
+        for (RequestListItem request : requests) {
+            CustomerSummary customer = customersById.get(request.getCustomerId());
+            if (customer != null) {
+                requestIdToCustomerMap.put(request.getId(), customer);
+            }
         }
 
         model.addAttribute("requests", requests);
         model.addAttribute("requestIdToCustomerMap", requestIdToCustomerMap);
+        model.addAttribute("page", page);
+        model.addAttribute("size", size);
+        model.addAttribute("engineers", referenceDataService.getEngineers());
+        model.addAttribute("equipmentTypes", referenceDataService.getEquipmentTypes());
         return "requests/list";
     }
 
+    /**
+     * Полнотекстовый поиск заявок по описанию проблемы и адресу (результаты по релевантности)
+     */
+    @GetMapping("/requests/search")
+    public String searchRequests(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            Model model) {
+        try {
+            RequestSearchService.SearchPage result = requestSearchService.search(q, Math.max(page, 0), SEARCH_PAGE_SIZE);
+            model.addAttribute("result", result);
+        } catch (Exception e) {
+            log.error("Ошибка при поиске заявок", e);
+            model.addAttribute("errorMessage", "Ошибка поиска: " + e.getMessage());
+        }
+        model.addAttribute("q", q);
+        return "requests/search";
+    }
+
     /**
      * Форма создания новой заявки
      */
     @GetMapping("/requests/new")
     public String newRequestForm(Model model) {
-        List<Customer> customers = customerRepository.findAll();
-        List<EquipmentType> equipmentTypes = equipmentTypeRepository.findAll();
+        List<CustomerSummary> customers = customerRepository.findAllSummaries();
+        List<EquipmentType> equipmentTypes = referenceDataService.getEquipmentTypes();
         model.addAttribute("customers", customers);
         model.addAttribute("equipmentTypes", equipmentTypes);
         model.addAttribute("request", new Request());
@@ -236,11 +307,14 @@ public class WebController {
         Request request = requestOpt.get();
 
         // Получаем клиента по customerId (может быть phoneNumber или ID)
-        Customer customer = findCustomerByIdOrPhone(request.getCustomerId()).orElse(null);
+        CustomerSummary customer = customerResolver.resolve(request.getCustomerId()).orElse(null);
 
         // Загружаем зарезервированные запчасти
         List<ReservePart> reserveParts = reservePartRepository.findByRequestId(request.getId());
 
+        // Состояние отправки заказа в 1С
+        OrderOutbox orderOutbox = orderOutboxRepository.findFirstByRequestIdOrderByIdDesc(request.getId()).orElse(null);
+
         // Проверяем права доступа
         boolean canEdit = authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
         boolean canComplete = authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ENGINEER"));
@@ -250,11 +324,12 @@ public class WebController {
         Optional<User> currentUserOpt = userService.findByLogin(currentUsername);
         Integer currentUserId = currentUserOpt.map(User::getId).orElse(null);
         // Получаем список инженеров для назначения
-        List<User> engineers = userService.findAllByRole("ENGINEER");
+        List<User> engineers = referenceDataService.getEngineers();
 
         model.addAttribute("request", request);
         model.addAttribute("customer", customer);
         model.addAttribute("reserveParts", reserveParts);
+        model.addAttribute("orderOutbox", orderOutbox);
         model.addAttribute("canEdit", canEdit);
         model.addAttribute("canComplete", canComplete);
         model.addAttribute("currentUserId", currentUserId);
@@ -277,17 +352,12 @@ public class WebController {
 
         Request request = requestOpt.get();
 
-        List<Customer> customers = customerRepository.findAll();
-        List<User> engineers = userService.findAllByRole("ENGINEER");
-        List<EquipmentType> equipmentTypes = equipmentTypeRepository.findAll();
+        List<CustomerSummary> customers = customerRepository.findAllSummaries();
+        List<User> engineers = referenceDataService.getEngineers();
+        List<EquipmentType> equipmentTypes = referenceDataService.getEquipmentTypes();
 
         // Получаем текущего клиента заявки (может быть phoneNumber или ID)
-        Customer currentCustomer = findCustomerByIdOrPhone(request.getCustomerId()).orElse(null);
-
-        // Инициализируем тип оборудования, если он есть
-        if (request.getEquipmentType() != null) {
-            request.getEquipmentType().getName(); // Инициализируем прокси
-        }
+        CustomerSummary currentCustomer = customerResolver.resolve(request.getCustomerId()).orElse(null);
 
         model.addAttribute("request", request);
         model.addAttribute("customers", customers);
@@ -317,23 +387,11 @@ public class WebController {
             return "redirect:/requests/" + id;
         }
 
-        // Получаем список доступных запчастей
-        List<Part> availableParts = partRepository.findAll();
-        // Инициализируем PartType для каждой запчасти, чтобы избежать проблем с Hibernate прокси при сериализации
-        for (Part part : availableParts) {
-            if (part.getType() != null) {
-                part.getType().getName(); // Инициализируем прокси
-            }
-        }
+        // Получаем список доступных запчастей из снимка каталога
+        List<CatalogPartItem> availableParts = catalogSnapshotService.getSnapshot().getParts();
 
-        // Получаем уже зарезервированные запчасти для этой заявки
+        // Получаем уже зарезервированные запчасти для этой заявки (вместе с запчастями и их типами)
         List<ReservePart> existingReserveParts = reservePartRepository.findByRequestIdAndStatus(id, "active");
-        // Инициализируем PartType для зарезервированных запчастей
-        for (ReservePart reservePart : existingReserveParts) {
-            if (reservePart.getPart() != null && reservePart.getPart().getType() != null) {
-                reservePart.getPart().getType().getName(); // Инициализируем прокси
-            }
-        }
 
         model.addAttribute("request", request);
         model.addAttribute("availableParts", availableParts);
@@ -362,42 +420,23 @@ public class WebController {
         }
 
         // Получаем клиента (может быть phoneNumber или ID)
-        Customer customer = findCustomerByIdOrPhone(request.getCustomerId()).orElse(null);
+        CustomerSummary customer = customerResolver.resolve(request.getCustomerId()).orElse(null);
 
         // Получаем тип запчастей (материалов)
-        PartType materialType = partTypeRepository.findAll().stream()
-                .filter(t -> "material".equalsIgnoreCase(t.getName()))
-                .findFirst()
-                .orElse(null);
+        PartType materialType = referenceDataService.getMaterialPartType();
 
-        // Получаем услуги из таблицы services
-        List<ServiceEntity> services = serviceRepository.findAll();
+        CatalogSnapshotService.CatalogSnapshot catalog = catalogSnapshotService.getSnapshot();
 
-        // Получаем зарезервированные запчасти (материалы)
+        // Получаем зарезервированные запчасти (материалы) вместе с запчастями и их типами
         List<ReservePart> reserveParts = reservePartRepository.findByRequestIdAndStatus(id, "active");
-        // Инициализируем PartType для зарезервированных запчастей
-        for (ReservePart reservePart : reserveParts) {
-            if (reservePart.getPart() != null && reservePart.getPart().getType() != null) {
-                reservePart.getPart().getType().getName(); // Инициализируем прокси
-            }
-        }
 
         // Получаем список доступных запчастей для добавления новых (только материалы)
-        List<Part> allParts = partRepository.findAll();
-        // Инициализируем PartType для всех запчастей
-        for (Part part : allParts) {
-            if (part.getType() != null) {
-                part.getType().getName(); // Инициализируем прокси
-            }
-        }
-
-        List<Part> availableParts = allParts.stream()
-                .filter(p -> materialType != null && p.getType() != null && materialType.getId().equals(p.getType().getId()))
-                .toList();
+        List<CatalogPartItem> availableParts =
+                catalog.getPartsOfType(materialType != null ? materialType.getId() : null);
 
         model.addAttribute("request", request);
         model.addAttribute("customer", customer);
-        model.addAttribute("services", services);
+        model.addAttribute("services", catalog.getServices());
         model.addAttribute("reserveParts", reserveParts);
         model.addAttribute("availableParts", availableParts);
 
@@ -418,11 +457,11 @@ public class WebController {
             return "redirect:/requests/" + requestId;
         }
 
-        // Получаем услуги из таблицы services
-        List<ServiceEntity> services = serviceRepository.findAll();
+        // Получаем услуги из снимка каталога
+        List<CatalogServiceItem> services = catalogSnapshotService.getSnapshot().getServices();
 
         // Получаем клиента по customerId (может быть phoneNumber или ID)
-        Customer customer = findCustomerByIdOrPhone(request.getCustomerId()).orElse(null);
+        CustomerSummary customer = customerResolver.resolve(request.getCustomerId()).orElse(null);
 
         model.addAttribute("request", request);
         model.addAttribute("customer", customer);
@@ -430,5 +469,30 @@ public class WebController {
         return "order-form-from-request";
     }
 
+    /**
+     * Условный GET для тяжелых страниц-списков: страница помечается слабым ETag, вычисленным по версии
+     * отображаемых данных, и браузер перепроверяет ее при каждом показе (Cache-Control: private, no-cache)
+     * ETag включает сессию: в странице есть CSRF-токен сессии и она зависит от пользователя и его ролей
+     * Если версия совпала с If-None-Match, выставляется ответ 304 и страница не формируется
+     *
+     * @param state значения, от которых зависит содержимое страницы
+     * @return true, если ответ 304 уже сформирован
+     */
+    private boolean checkNotModified(WebRequest webRequest, HttpServletResponse response, Model model, Object... state) {
+        if (model.containsAttribute("successMessage") || model.containsAttribute("errorMessage")) {
+            // Flash-сообщение показывается один раз, такой ответ не должен становиться версией страницы
+            return false;
+        }
+        response.setHeader("Cache-Control", "private, no-cache");
+        response.setHeader("Vary", "Cookie");
 
+        String content = webRequest.getSessionId() + "\u001F" + Arrays.toString(state);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String hash = HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+            return webRequest.checkNotModified("W/\"" + hash.substring(0, 32) + "\"");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package ru.flish1.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запчасть в снимке каталога (страница номенклатуры и выбор запчастей)
+ * Заполняется запросом-проекцией, сущность Part при этом не загружается
+ */
+public class CatalogPartItem {
+    private final Integer id;
+    private final String name;
+    private final String sku;
+    private final Integer quantity;
+    private final Double price;
+    private final String unit;
+    private final String nomenclatureId;
+    private final Integer typeId;
+    private final String typeName;
+    private final LocalDateTime updatedAt;
+
+    public CatalogPartItem(Integer id, String name, String sku, Integer quantity, Double price, String unit,
+                           String nomenclatureId, Integer typeId, String typeName, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.sku = sku;
+        this.quantity = quantity;
+        this.price = price;
+        this.unit = unit;
+        this.nomenclatureId = nomenclatureId;
+        this.typeId = typeId;
+        this.typeName = typeName;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Копия запчасти с новым остатком
+     */
+    public CatalogPartItem withStock(Integer quantity, LocalDateTime updatedAt) {
+        return new CatalogPartItem(id, name, sku, quantity, price, unit, nomenclatureId, typeId, typeName, updatedAt);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    /**
+     * Свободный для резервирования остаток на момент снимка
+     */
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public String getNomenclatureId() {
+        return nomenclatureId;
+    }
+
+    public Integer getTypeId() {
+        return typeId;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.flish1.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Услуга в снимке каталога (страница номенклатуры и выбор услуг)
+ * Заполняется запросом-проекцией, сущность ServiceEntity при этом не загружается
+ */
+public class CatalogServiceItem {
+    private final Integer id;
+    private final String name;
+    private final String sku;
+    private final Double price;
+    private final String unit;
+    private final String nomenclatureId;
+    private final LocalDateTime updatedAt;
+
+    public CatalogServiceItem(Integer id, String name, String sku, Double price, String unit,
+                              String nomenclatureId, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.sku = sku;
+        this.price = price;
+        this.unit = unit;
+        this.nomenclatureId = nomenclatureId;
+        this.updatedAt = updatedAt;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public String getNomenclatureId() {
+        return nomenclatureId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
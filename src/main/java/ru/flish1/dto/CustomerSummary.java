@@ -0,0 +1,37 @@
+package ru.flish1.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Клиент для отображения на страницах (список клиентов, выбор клиента, карточка заявки)
+ * Заполняется запросом-проекцией, сущность Customer при этом не загружается
+ */
+public class CustomerSummary {
+    private final Integer id;
+    private final String fullName;
+    private final String phoneNumber;
+    private final LocalDateTime createdAt;
+
+    public CustomerSummary(Integer id, String fullName, String phoneNumber, LocalDateTime createdAt) {
+        this.id = id;
+        this.fullName = fullName;
+        this.phoneNumber = phoneNumber;
+        this.createdAt = createdAt;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.flish1.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Фильтр списка заявок
+ * Пустые поля не ограничивают выборку; период создания задается включительно по датам
+ */
+public class RequestFilter {
+    private String status;
+
+    private Integer engineerId;
+
+    private Integer equipmentTypeId;
+
+    private String customerId; // Номер телефона или ID клиента, как в заявке
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdTo;
+
+    public RequestFilter() {
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getEngineerId() {
+        return engineerId;
+    }
+
+    public void setEngineerId(Integer engineerId) {
+        this.engineerId = engineerId;
+    }
+
+    public Integer getEquipmentTypeId() {
+        return equipmentTypeId;
+    }
+
+    public void setEquipmentTypeId(Integer equipmentTypeId) {
+        this.equipmentTypeId = equipmentTypeId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public LocalDate getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public void setCreatedFrom(LocalDate createdFrom) {
+        this.createdFrom = createdFrom;
+    }
+
+    public LocalDate getCreatedTo() {
+        return createdTo;
+    }
+
+    public void setCreatedTo(LocalDate createdTo) {
+        this.createdTo = createdTo;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.flish1.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка заявок: только поля, которые показывает список
+ * Заполняется запросом-проекцией с join инженера и типа оборудования, сущности при этом не загружаются
+ */
+public class RequestListItem {
+
+    /**
+     * Сколько символов описания проблемы выбирается для списка (в списке описание сокращается до 50)
+     */
+    public static final int PROBLEM_PREVIEW_LENGTH = 60;
+
+    private final Integer id;
+    private final String customerId;
+    private final String address;
+    private final String status;
+    private final String problemPreview;
+    private final String customEquipmentType;
+    private final String equipmentTypeName;
+    private final Boolean equipmentTypeOther;
+    private final String engineerFullName;
+    private final String engineerLogin;
+    private final LocalDateTime createdAt;
+
+    public RequestListItem(Integer id, String customerId, String address, String status, String problemPreview,
+                           String customEquipmentType, String equipmentTypeName, Boolean equipmentTypeOther,
+                           String engineerFullName, String engineerLogin, LocalDateTime createdAt) {
+        this.id = id;
+        this.customerId = customerId;
+        this.address = address;
+        this.status = status;
+        this.problemPreview = problemPreview;
+        this.customEquipmentType = customEquipmentType;
+        this.equipmentTypeName = equipmentTypeName;
+        this.equipmentTypeOther = equipmentTypeOther;
+        this.engineerFullName = engineerFullName;
+        this.engineerLogin = engineerLogin;
+        this.createdAt = createdAt;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Начало описания проблемы (не более PROBLEM_PREVIEW_LENGTH символов)
+     */
+    public String getProblemPreview() {
+        return problemPreview;
+    }
+
+    /**
+     * Тип оборудования для отображения: пользовательский тип для "Другое", иначе название типа
+     */
+    public String getEquipmentTypeLabel() {
+        if (Boolean.TRUE.equals(equipmentTypeOther) && customEquipmentType != null) {
+            return customEquipmentType;
+        }
+        return equipmentTypeName;
+    }
+
+    /**
+     * ФИО назначенного инженера (логин, если ФИО не заполнено); null - инженер не назначен
+     */
+    public String getEngineerName() {
+        return engineerFullName != null ? engineerFullName : engineerLogin;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -11,20 +11,26 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 /**
  * Запчасти (номенклатура материалов)
  * Может синхронизироваться из 1C, но также может иметь локальные записи
+ * Остаток (quantity) меняется только условными UPDATE при резервировании, поэтому UPDATE сущности
+ * содержит лишь измененные поля: синхронизация не перезаписывает остаток, прочитанный до чужого резерва
  */
 @Entity
+@DynamicUpdate
 @Table(name = "parts")
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Part {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parts_seq")
+    @SequenceGenerator(name = "parts_seq", sequenceName = "parts_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "name")
@@ -45,6 +51,13 @@ public class Part {
     @Column(name = "nomenclature_id")
     private String nomenclatureId; // ID из 1C (для связи с номенклатурой 1C)
 
+    /**
+     * Хэш содержимого элемента номенклатуры 1C (наименование, цена, единица, артикул, тип)
+     * Используется для пропуска неизмененных записей при синхронизации
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "type_id", nullable = false)
     private PartType type;
@@ -144,4 +157,12 @@ public class Part {
     public void setNomenclatureId(String nomenclatureId) {
         this.nomenclatureId = nomenclatureId;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
 }
@@ -8,10 +8,12 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 import java.time.LocalDateTime;
@@ -22,11 +24,20 @@ import java.time.LocalDateTime;
  * Заказ отправляется в 1C, но не хранится в БД
  */
 @Entity
-@Table(name = "requests")
+@Table(name = "requests", indexes = {
+        @Index(name = "idx_requests_status_next_payment_check", columnList = "status, next_payment_check_at"),
+        @Index(name = "idx_requests_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_requests_status_created_at", columnList = "status, created_at, id"),
+        @Index(name = "idx_requests_engineer_created_at", columnList = "engineer_id, created_at, id"),
+        @Index(name = "idx_requests_equipment_type_created_at", columnList = "equipment_type_id, created_at, id"),
+        @Index(name = "idx_requests_customer_created_at", columnList = "customer_id, created_at, id"),
+        @Index(name = "idx_requests_updated_at_id", columnList = "updated_at, id")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Request {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "requests_seq")
+    @SequenceGenerator(name = "requests_seq", sequenceName = "requests_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "customer_id", nullable = false, insertable = true, updatable = true)
@@ -75,6 +86,25 @@ public class Request {
     @Column(name = "document_1c_id")
     private String document1cId;
 
+    /**
+     * Время завершения заявки (от него считается возраст документа при проверке оплаты)
+     */
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    /**
+     * Время следующей фоновой проверки оплаты в 1С (null - проверить при ближайшем запуске)
+     */
+    @Column(name = "next_payment_check_at")
+    private LocalDateTime nextPaymentCheckAt;
+
+    /**
+     * Наличная оплата подтверждена инженером, но подтверждение еще не отправлено в 1С
+     * (заказ еще не передан в 1С или 1С была недоступна); его отправляет OrderOutboxDispatcher
+     */
+    @Column(name = "cash_confirmation_pending")
+    private Boolean cashConfirmationPending;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -233,4 +263,28 @@ public class Request {
             default -> paymentMethod;
         };
     }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public LocalDateTime getNextPaymentCheckAt() {
+        return nextPaymentCheckAt;
+    }
+
+    public void setNextPaymentCheckAt(LocalDateTime nextPaymentCheckAt) {
+        this.nextPaymentCheckAt = nextPaymentCheckAt;
+    }
+
+    public Boolean getCashConfirmationPending() {
+        return cashConfirmationPending;
+    }
+
+    public void setCashConfirmationPending(Boolean cashConfirmationPending) {
+        this.cashConfirmationPending = cashConfirmationPending;
+    }
 }
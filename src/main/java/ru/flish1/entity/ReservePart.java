@@ -8,9 +8,14 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 import java.time.LocalDateTime;
@@ -19,11 +24,23 @@ import java.time.LocalDateTime;
  * Зарезервированные запчасти для заявок
  */
 @Entity
-@Table(name = "reserve_parts")
+@Table(name = "reserve_parts", indexes = {
+        @Index(name = "idx_reserve_parts_status_created", columnList = "status, created_at")
+})
+@NamedEntityGraph(name = ReservePart.GRAPH_PART_WITH_TYPE,
+        attributeNodes = @NamedAttributeNode(value = "part", subgraph = "part"),
+        subgraphs = @NamedSubgraph(name = "part", attributeNodes = @NamedAttributeNode("type")))
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class ReservePart {
+
+    /**
+     * Граф загрузки: резервирование вместе с запчастью и ее типом (одним запросом)
+     */
+    public static final String GRAPH_PART_WITH_TYPE = "ReservePart.partWithType";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reserve_parts_seq")
+    @SequenceGenerator(name = "reserve_parts_seq", sequenceName = "reserve_parts_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,11 +59,18 @@ public class ReservePart {
     private Integer usedQuantity;
 
     @Column(name = "status", nullable = false)
-    private String status; // active, closed
+    private String status; // active, used (заявка завершена), closed (снят ReservationSweeper)
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    /**
+     * Количество резерва списано с Part.quantity и при снятии резерва возвращается на склад
+     * Резервы, созданные до списания остатка при резервировании, переводит ReservationStockMigration
+     */
+    @Column(name = "stock_reserved")
+    private Boolean stockReserved;
+
     public ReservePart() {
     }
 
@@ -123,4 +147,12 @@ public class ReservePart {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Boolean getStockReserved() {
+        return stockReserved;
+    }
+
+    public void setStockReserved(Boolean stockReserved) {
+        this.stockReserved = stockReserved;
+    }
 }
@@ -0,0 +1,109 @@
+package ru.flish1.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Блокировка фоновой задачи в общей БД
+ * Позволяет нескольким экземплярам приложения выполнять задачу по очереди (по аналогии с ShedLock)
+ */
+@Entity
+@Table(name = "scheduler_locks")
+public class SchedulerLock {
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by")
+    private String lockedBy; // узел, удерживающий блокировку (pid@host)
+
+    @Column(name = "last_run_started_at")
+    private LocalDateTime lastRunStartedAt;
+
+    @Column(name = "last_run_duration_ms")
+    private Long lastRunDurationMs;
+
+    @Column(name = "last_run_status")
+    private String lastRunStatus;
+
+    public SchedulerLock() {
+    }
+
+    public SchedulerLock(String name, LocalDateTime lockedUntil) {
+        this.name = name;
+        this.lockedUntil = lockedUntil;
+    }
+
+    /**
+     * Блокировка действует, пока не истекла аренда
+     */
+    public boolean isActive() {
+        return lockedUntil != null && lockedUntil.isAfter(LocalDateTime.now());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public LocalDateTime getLockedAt() {
+        return lockedAt;
+    }
+
+    public void setLockedAt(LocalDateTime lockedAt) {
+        this.lockedAt = lockedAt;
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+
+    public LocalDateTime getLastRunStartedAt() {
+        return lastRunStartedAt;
+    }
+
+    public void setLastRunStartedAt(LocalDateTime lastRunStartedAt) {
+        this.lastRunStartedAt = lastRunStartedAt;
+    }
+
+    public Long getLastRunDurationMs() {
+        return lastRunDurationMs;
+    }
+
+    public void setLastRunDurationMs(Long lastRunDurationMs) {
+        this.lastRunDurationMs = lastRunDurationMs;
+    }
+
+    public String getLastRunStatus() {
+        return lastRunStatus;
+    }
+
+    public void setLastRunStatus(String lastRunStatus) {
+        this.lastRunStatus = lastRunStatus;
+    }
+}
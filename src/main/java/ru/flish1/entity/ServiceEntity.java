@@ -8,6 +8,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 import java.time.LocalDateTime;
@@ -21,7 +22,8 @@ import java.time.LocalDateTime;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class ServiceEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "services_seq")
+    @SequenceGenerator(name = "services_seq", sequenceName = "services_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "name")
@@ -39,6 +41,13 @@ public class ServiceEntity {
     @Column(name = "nomenclature_id")
     private String nomenclatureId; // ID из 1C (для связи с номенклатурой 1C)
 
+    /**
+     * Хэш содержимого элемента номенклатуры 1C (наименование, цена, единица, артикул, тип)
+     * Используется для пропуска неизмененных записей при синхронизации
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
@@ -116,5 +125,12 @@ public class ServiceEntity {
     public void setNomenclatureId(String nomenclatureId) {
         this.nomenclatureId = nomenclatureId;
     }
-}
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+}
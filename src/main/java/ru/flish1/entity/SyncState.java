@@ -0,0 +1,91 @@
+package ru.flish1.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние синхронизации справочника из 1C
+ * Хранит ETag последнего полностью загруженного ответа, чтобы не загружать неизмененный справочник повторно,
+ * а также контрольную точку незавершенной загрузки для продолжения с последней сохраненной пачки
+ */
+@Entity
+@Table(name = "sync_state")
+public class SyncState {
+    @Id
+    @Column(name = "name")
+    private String name; // nomenclature
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_synced_at")
+    private LocalDateTime lastSyncedAt;
+
+    @Column(name = "last_checked_at")
+    private LocalDateTime lastCheckedAt;
+
+    @Column(name = "resume_etag")
+    private String resumeEtag; // ETag ответа, загрузка которого была прервана
+
+    @Column(name = "committed_items")
+    private Integer committedItems; // количество элементов этого ответа, уже сохраненных в БД
+
+    public SyncState() {
+    }
+
+    public SyncState(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public LocalDateTime getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public void setLastSyncedAt(LocalDateTime lastSyncedAt) {
+        this.lastSyncedAt = lastSyncedAt;
+    }
+
+    public LocalDateTime getLastCheckedAt() {
+        return lastCheckedAt;
+    }
+
+    public void setLastCheckedAt(LocalDateTime lastCheckedAt) {
+        this.lastCheckedAt = lastCheckedAt;
+    }
+
+    public String getResumeEtag() {
+        return resumeEtag;
+    }
+
+    public void setResumeEtag(String resumeEtag) {
+        this.resumeEtag = resumeEtag;
+    }
+
+    public Integer getCommittedItems() {
+        return committedItems;
+    }
+
+    public void setCommittedItems(Integer committedItems) {
+        this.committedItems = committedItems;
+    }
+}
@@ -1,9 +1,15 @@
 package ru.flish1.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flish1.dto.CustomerSummary;
 import ru.flish1.entity.Customer;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -12,4 +18,28 @@ import java.util.Optional;
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
     Optional<Customer> findByPhoneNumber(String phoneNumber);
+
+    /**
+     * Все клиенты для списка и выбора клиента, без загрузки сущностей
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new ru.flish1.dto.CustomerSummary(c.id, c.fullName, c.phoneNumber, c.createdAt) FROM Customer c ORDER BY c.id")
+    List<CustomerSummary> findAllSummaries();
+
+    /**
+     * Состояние таблицы клиентов для версии страницы списка: одна строка [count, max(id)]
+     * Клиенты только добавляются, поэтому изменение списка всегда меняет одно из значений
+     */
+    @Query("SELECT COUNT(c), MAX(c.id) FROM Customer c")
+    List<Object[]> findListState();
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new ru.flish1.dto.CustomerSummary(c.id, c.fullName, c.phoneNumber, c.createdAt) FROM Customer c "
+            + "WHERE c.phoneNumber IN :phoneNumbers")
+    List<CustomerSummary> findSummariesByPhoneNumberIn(@Param("phoneNumbers") Collection<String> phoneNumbers);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new ru.flish1.dto.CustomerSummary(c.id, c.fullName, c.phoneNumber, c.createdAt) FROM Customer c "
+            + "WHERE c.id IN :ids")
+    List<CustomerSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
 }
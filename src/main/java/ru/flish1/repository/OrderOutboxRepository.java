@@ -0,0 +1,25 @@
+package ru.flish1.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.flish1.entity.OrderOutbox;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с исходящими заказами для 1C
+ */
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutbox, Long> {
+
+    /**
+     * Сообщения в указанном статусе, время следующей попытки которых наступило, в порядке создания
+     */
+    List<OrderOutbox> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(String status, LocalDateTime now,
+                                                                             Pageable pageable);
+
+    Optional<OrderOutbox> findFirstByRequestIdOrderByIdDesc(Integer requestId);
+}
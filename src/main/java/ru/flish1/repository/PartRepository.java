@@ -1,9 +1,14 @@
 package ru.flish1.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.flish1.dto.CatalogPartItem;
 import ru.flish1.entity.Part;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +21,47 @@ public interface PartRepository extends JpaRepository<Part, Integer> {
 
     Optional<Part> findByNomenclatureId(String nomenclatureId);
 
+    List<Part> findByNomenclatureIdIn(Collection<String> nomenclatureIds);
+
+    List<Part> findBySkuIn(Collection<String> skus);
+
     List<Part> findByTypeId(Integer typeId);
+
+    /**
+     * Все запчасти вместе с типом, по возрастанию ID (проекция для снимка каталога)
+     */
+    @Query("SELECT new ru.flish1.dto.CatalogPartItem(p.id, p.name, p.sku, p.quantity, p.price, p.unit, "
+            + "p.nomenclatureId, t.id, t.name, p.updatedAt) FROM Part p LEFT JOIN p.type t ORDER BY p.id")
+    List<CatalogPartItem> findCatalogItems();
+
+    /**
+     * Текущие остатки и время изменения запчастей: строки [id, quantity, updatedAt]
+     */
+    @Query("SELECT p.id, p.quantity, p.updatedAt FROM Part p WHERE p.id IN :ids")
+    List<Object[]> findStockByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Состояние таблицы запчастей для проверки актуальности снимка каталога: одна строка [count, max(updatedAt)]
+     */
+    @Query("SELECT COUNT(p), MAX(p.updatedAt) FROM Part p")
+    List<Object[]> findCatalogState();
+
+    /**
+     * Списывает остаток под резерв, только если его хватает
+     * Проверка и списание выполняются одним UPDATE, поэтому параллельные резервирования не уводят остаток в минус
+     * updatedAt обновляется, чтобы изменение остатка было видно при проверке актуальности снимка каталога
+     *
+     * @return 1 - остаток списан, 0 - остатка недостаточно (или запчасть не найдена)
+     */
+    @Modifying
+    @Query("UPDATE Part p SET p.quantity = p.quantity - :quantity, p.updatedAt = LOCAL DATETIME WHERE p.id = :id AND p.quantity >= :quantity")
+    int reserveStock(@Param("id") Integer id, @Param("quantity") int quantity);
+
+    /**
+     * Возвращает на склад остаток снятого резерва
+     */
+    @Modifying
+    @Query("UPDATE Part p SET p.quantity = COALESCE(p.quantity, 0) + :quantity, p.updatedAt = LOCAL DATETIME WHERE p.id = :id")
+    int releaseStock(@Param("id") Integer id, @Param("quantity") int quantity);
 }
 
@@ -1,11 +1,16 @@
 package ru.flish1.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.flish1.entity.Request;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,18 +18,51 @@ import java.util.Optional;
  * Репозиторий для работы с заявками
  */
 @Repository
-public interface RequestRepository extends JpaRepository<Request, Integer> {
-    List<Request> findAllByOrderByCreatedAtDesc();
-
+public interface RequestRepository extends JpaRepository<Request, Integer>, JpaSpecificationExecutor<Request>,
+        RequestRepositoryCustom {
     List<Request> findByCustomerIdOrderByCreatedAtDesc(String customerId);
 
-    List<Request> findByStatusOrderByCreatedAtDesc(String status);
-
-    List<Request> findByEngineerIdOrderByCreatedAtDesc(Integer engineerId);
-
     @Query("SELECT r FROM Request r LEFT JOIN FETCH r.engineer LEFT JOIN FETCH r.equipmentType WHERE r.id = :id")
     Optional<Request> findByIdWithEngineer(@Param("id") Integer id);
 
-    @Query("SELECT r FROM Request r LEFT JOIN FETCH r.engineer LEFT JOIN FETCH r.equipmentType ORDER BY r.createdAt DESC")
-    List<Request> findAllWithEngineerOrderByCreatedAtDesc();
+    /**
+     * Заявки, измененные после указанной позиции (updated_at, id) и раньше момента before,
+     * в порядке изменения - для инкрементального обновления полнотекстового индекса
+     */
+    @Query("SELECT r FROM Request r WHERE r.updatedAt < :before " +
+            "AND (r.updatedAt > :updatedAt OR (r.updatedAt = :updatedAt AND r.id > :id)) " +
+            "ORDER BY r.updatedAt, r.id")
+    List<Request> findUpdatedAfter(@Param("updatedAt") LocalDateTime updatedAt, @Param("id") Integer id,
+                                   @Param("before") LocalDateTime before, Pageable pageable);
+
+    /**
+     * Завершенные безналичные заявки с документом 1С, проверка оплаты которых наступила
+     * Постраничная выборка по ключу: следующая страница начинается после последнего ID предыдущей
+     */
+    @Query("SELECT r FROM Request r WHERE r.status = 'completed' AND r.document1cId IS NOT NULL " +
+            "AND (r.paymentMethod IS NULL OR r.paymentMethod <> 'cash') " +
+            "AND (r.nextPaymentCheckAt IS NULL OR r.nextPaymentCheckAt <= :now) " +
+            "AND r.id > :afterId ORDER BY r.id")
+    List<Request> findDuePaymentChecks(@Param("now") LocalDateTime now, @Param("afterId") Integer afterId,
+                                       Pageable pageable);
+
+    /**
+     * Заявки с неотправленным подтверждением наличной оплаты, по заказу которых уже получен документ 1С
+     */
+    @Query("SELECT r FROM Request r WHERE r.cashConfirmationPending = true AND r.document1cId IS NOT NULL ORDER BY r.id")
+    List<Request> findPendingCashConfirmations(Pageable pageable);
+
+    /**
+     * Переводит оплаченные заявки в статус "paid" одним запросом
+     */
+    @Modifying
+    @Query("UPDATE Request r SET r.status = 'paid', r.updatedAt = :now WHERE r.id IN :ids AND r.status = 'completed'")
+    int markPaid(@Param("ids") Collection<Integer> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Назначает время следующей проверки оплаты группе заявок
+     */
+    @Modifying
+    @Query("UPDATE Request r SET r.nextPaymentCheckAt = :nextCheckAt WHERE r.id IN :ids")
+    int scheduleNextPaymentCheck(@Param("ids") Collection<Integer> ids, @Param("nextCheckAt") LocalDateTime nextCheckAt);
 }
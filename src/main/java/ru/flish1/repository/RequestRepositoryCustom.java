@@ -0,0 +1,23 @@
+package ru.flish1.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.flish1.dto.RequestListItem;
+import ru.flish1.entity.Request;
+
+import java.util.List;
+
+/**
+ * Запросы к заявкам, которые нельзя выразить методами Spring Data
+ */
+public interface RequestRepositoryCustom {
+
+    /**
+     * Строки списка заявок, удовлетворяющих условию, в заданном порядке
+     *
+     * @param spec  условие выборки
+     * @param sort  порядок
+     * @param limit максимальное количество строк
+     */
+    List<RequestListItem> findListItems(Specification<Request> spec, Sort sort, int limit);
+}
@@ -0,0 +1,62 @@
+package ru.flish1.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.flish1.dto.RequestListItem;
+import ru.flish1.entity.EquipmentType;
+import ru.flish1.entity.Request;
+import ru.flish1.entity.User;
+
+import java.util.List;
+
+/**
+ * Реализация {@link RequestRepositoryCustom}
+ */
+public class RequestRepositoryImpl implements RequestRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    public RequestRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<RequestListItem> findListItems(Specification<Request> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RequestListItem> query = cb.createQuery(RequestListItem.class);
+        Root<Request> root = query.from(Request.class);
+        Join<Request, User> engineer = root.join("engineer", JoinType.LEFT);
+        Join<Request, EquipmentType> equipmentType = root.join("equipmentType", JoinType.LEFT);
+
+        query.select(cb.construct(RequestListItem.class,
+                root.get("id"),
+                root.get("customerId"),
+                root.get("address"),
+                root.get("status"),
+                cb.substring(root.get("problemDescription"), 1, RequestListItem.PROBLEM_PREVIEW_LENGTH),
+                root.get("customEquipmentType"),
+                equipmentType.get("name"),
+                equipmentType.get("isOther"),
+                engineer.get("fullName"),
+                engineer.get("login"),
+                root.get("createdAt")));
+
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.flish1.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.flish1.dto.RequestFilter;
+import ru.flish1.entity.Request;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Условия выборки заявок для постраничного списка
+ */
+public final class RequestSpecifications {
+
+    private RequestSpecifications() {
+    }
+
+    public static Specification<Request> hasStatus(String status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Request> hasEngineer(Integer engineerId) {
+        return (root, query, cb) -> cb.equal(root.get("engineer").get("id"), engineerId);
+    }
+
+    public static Specification<Request> hasEquipmentType(Integer equipmentTypeId) {
+        return (root, query, cb) -> cb.equal(root.get("equipmentType").get("id"), equipmentTypeId);
+    }
+
+    public static Specification<Request> hasCustomer(String customerId) {
+        return (root, query, cb) -> cb.equal(root.get("customerId"), customerId);
+    }
+
+    public static Specification<Request> idIn(Collection<Integer> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    public static Specification<Request> createdFrom(LocalDateTime from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), from);
+    }
+
+    public static Specification<Request> createdBefore(LocalDateTime before) {
+        return (root, query, cb) -> cb.lessThan(root.get("createdAt"), before);
+    }
+
+    /**
+     * Условия фильтра списка заявок; незаполненные поля фильтра не добавляют условий
+     */
+    public static Specification<Request> matching(RequestFilter filter) {
+        Specification<Request> spec = Specification.where(null);
+        if (filter == null) {
+            return spec;
+        }
+        if (filter.getStatus() != null && !filter.getStatus().isBlank()) {
+            spec = spec.and(hasStatus(filter.getStatus()));
+        }
+        if (filter.getEngineerId() != null) {
+            spec = spec.and(hasEngineer(filter.getEngineerId()));
+        }
+        if (filter.getEquipmentTypeId() != null) {
+            spec = spec.and(hasEquipmentType(filter.getEquipmentTypeId()));
+        }
+        if (filter.getCustomerId() != null && !filter.getCustomerId().isBlank()) {
+            spec = spec.and(hasCustomer(filter.getCustomerId().trim()));
+        }
+        if (filter.getCreatedFrom() != null) {
+            spec = spec.and(createdFrom(filter.getCreatedFrom().atStartOfDay()));
+        }
+        if (filter.getCreatedTo() != null) {
+            spec = spec.and(createdBefore(filter.getCreatedTo().plusDays(1).atStartOfDay()));
+        }
+        return spec;
+    }
+
+    /**
+     * Заявки, идущие в порядке (created_at DESC, id DESC) после указанной: более старые
+     */
+    public static Specification<Request> olderThan(LocalDateTime createdAt, Integer id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+
+    /**
+     * Заявки, идущие в порядке (created_at DESC, id DESC) перед указанной: более новые
+     */
+    public static Specification<Request> newerThan(LocalDateTime createdAt, Integer id) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.greaterThan(root.get("id"), id)));
+    }
+}
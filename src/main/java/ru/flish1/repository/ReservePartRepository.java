@@ -1,9 +1,16 @@
 package ru.flish1.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.flish1.entity.ReservePart;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -11,8 +18,78 @@ import java.util.List;
  */
 @Repository
 public interface ReservePartRepository extends JpaRepository<ReservePart, Long> {
+    /**
+     * Резервирования заявки вместе с запчастями и их типами одним запросом
+     */
+    @EntityGraph(ReservePart.GRAPH_PART_WITH_TYPE)
     List<ReservePart> findByRequestId(Integer requestId);
 
+    /**
+     * Резервирования заявки в заданном статусе вместе с запчастями и их типами одним запросом
+     */
+    @EntityGraph(ReservePart.GRAPH_PART_WITH_TYPE)
     List<ReservePart> findByRequestIdAndStatus(Integer requestId, String status);
+
+    /**
+     * Резервирования заявки в указанных статусах вместе с запчастями одним запросом
+     */
+    @Query("SELECT rp FROM ReservePart rp JOIN FETCH rp.part WHERE rp.request.id = :requestId AND rp.status IN :statuses")
+    List<ReservePart> findWithPartByRequestIdAndStatusIn(@Param("requestId") Integer requestId,
+                                                         @Param("statuses") Collection<String> statuses);
+
+    /**
+     * Количество в активных резервах по каждой запчасти: пары [ID запчасти, количество]
+     */
+    @Query("SELECT rp.part.id, SUM(rp.quantity) FROM ReservePart rp WHERE rp.status = 'active' GROUP BY rp.part.id")
+    List<Object[]> sumActiveQuantityByPart();
+
+    /**
+     * Состояние активных резервов для версии страницы номенклатуры: одна строка [count, sum(quantity), max(id)]
+     */
+    @Query("SELECT COUNT(rp), SUM(rp.quantity), MAX(rp.id) FROM ReservePart rp WHERE rp.status = 'active'")
+    List<Object[]> findActiveState();
+
+    /**
+     * ID активных резервирований, которые пора снять: по отмененным заявкам и просроченные по заявкам,
+     * работа по которым не начата. Резервы заявок в работе не снимаются: использованные запчасти из них
+     * попадают в заказ для 1С, а при завершении заявки резервы закрывает PartReservationService
+     */
+    @Query("SELECT rp.id FROM ReservePart rp WHERE rp.status = 'active' AND (rp.request.status = 'canceled' " +
+            "OR (rp.request.status IN ('new', 'assigned') AND rp.createdAt < :expiredBefore)) " +
+            "ORDER BY rp.id")
+    List<Long> findSweepableIds(@Param("expiredBefore") LocalDateTime expiredBefore, Pageable pageable);
+
+    /**
+     * Закрывает активные резервирования одним запросом
+     */
+    @Modifying
+    @Query("UPDATE ReservePart rp SET rp.status = 'closed' WHERE rp.id IN :ids AND rp.status = 'active'")
+    int closeActive(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Переводит резервирование завершенной заявки в статус used, только если оно еще активно
+     *
+     * @return 1 - резервирование закрыто этим вызовом, 0 - оно уже снято или закрыто
+     */
+    @Modifying
+    @Query("UPDATE ReservePart rp SET rp.status = 'used' WHERE rp.id = :id AND rp.status = 'active'")
+    int markUsedIfActive(@Param("id") Long id);
+
+    /**
+     * Удаляет резервирование, только если оно еще активно
+     *
+     * @return 1 - удалено активное резервирование, 0 - резервирования нет или оно уже закрыто
+     */
+    @Modifying
+    @Query("DELETE FROM ReservePart rp WHERE rp.id = :id AND rp.status = 'active'")
+    int deleteIfActive(@Param("id") Long id);
+
+    /**
+     * Количество по запчастям среди указанных резервирований в заданном статусе, списанное с остатка
+     * при резервировании: пары [ID запчасти, количество]
+     */
+    @Query("SELECT rp.part.id, SUM(rp.quantity) FROM ReservePart rp WHERE rp.id IN :ids AND rp.status = :status " +
+            "AND rp.stockReserved = true GROUP BY rp.part.id ORDER BY rp.part.id")
+    List<Object[]> sumQuantityByPart(@Param("ids") Collection<Long> ids, @Param("status") String status);
 }
 
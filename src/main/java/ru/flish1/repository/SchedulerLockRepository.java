@@ -0,0 +1,48 @@
+package ru.flish1.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.flish1.entity.SchedulerLock;
+
+import java.time.LocalDateTime;
+
+/**
+ * Репозиторий для работы с блокировками фоновых задач
+ */
+@Repository
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Захватывает блокировку, если аренда предыдущего владельца истекла
+     *
+     * @return 1, если блокировка захвачена, иначе 0
+     */
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :lockUntil, l.lockedAt = :now, l.lockedBy = :lockedBy, " +
+            "l.lastRunStartedAt = :now WHERE l.name = :name AND l.lockedUntil <= :now")
+    int tryAcquire(@Param("name") String name, @Param("now") LocalDateTime now,
+                   @Param("lockUntil") LocalDateTime lockUntil, @Param("lockedBy") String lockedBy);
+
+    /**
+     * Продлевает аренду блокировки, если она все еще принадлежит указанному узлу и не истекла
+     *
+     * @return 1, если аренда продлена, иначе 0
+     */
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :lockUntil " +
+            "WHERE l.name = :name AND l.lockedBy = :lockedBy AND l.lockedUntil > :now")
+    int extend(@Param("name") String name, @Param("lockedBy") String lockedBy, @Param("now") LocalDateTime now,
+               @Param("lockUntil") LocalDateTime lockUntil);
+
+    /**
+     * Освобождает блокировку, если она принадлежит указанному узлу, и сохраняет итог запуска
+     */
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :now, l.lastRunDurationMs = :durationMs, " +
+            "l.lastRunStatus = :status WHERE l.name = :name AND l.lockedBy = :lockedBy")
+    int release(@Param("name") String name, @Param("lockedBy") String lockedBy, @Param("now") LocalDateTime now,
+                @Param("durationMs") long durationMs, @Param("status") String status);
+}
@@ -1,9 +1,13 @@
 package ru.flish1.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import ru.flish1.dto.CatalogServiceItem;
 import ru.flish1.entity.ServiceEntity;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -14,6 +18,23 @@ public interface ServiceRepository extends JpaRepository<ServiceEntity, Integer>
     Optional<ServiceEntity> findBySku(String sku);
 
     Optional<ServiceEntity> findByNomenclatureId(String nomenclatureId);
+
+    List<ServiceEntity> findByNomenclatureIdIn(Collection<String> nomenclatureIds);
+
+    List<ServiceEntity> findBySkuIn(Collection<String> skus);
+
+    /**
+     * Все услуги по возрастанию ID (проекция для снимка каталога)
+     */
+    @Query("SELECT new ru.flish1.dto.CatalogServiceItem(s.id, s.name, s.sku, s.price, s.unit, s.nomenclatureId, "
+            + "s.updatedAt) FROM ServiceEntity s ORDER BY s.id")
+    List<CatalogServiceItem> findCatalogItems();
+
+    /**
+     * Состояние таблицы услуг для проверки актуальности снимка каталога: одна строка [count, max(updatedAt)]
+     */
+    @Query("SELECT COUNT(s), MAX(s.updatedAt) FROM ServiceEntity s")
+    List<Object[]> findCatalogState();
 }
 
 
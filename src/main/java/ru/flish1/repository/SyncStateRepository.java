@@ -0,0 +1,12 @@
+package ru.flish1.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.flish1.entity.SyncState;
+
+/**
+ * Репозиторий для работы с состоянием синхронизации
+ */
+@Repository
+public interface SyncStateRepository extends JpaRepository<SyncState, String> {
+}
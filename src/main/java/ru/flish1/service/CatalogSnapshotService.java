@@ -0,0 +1,305 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flish1.dto.CatalogPartItem;
+import ru.flish1.dto.CatalogServiceItem;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.ServiceRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Снимок каталога (услуги и запчасти) в памяти
+ * Страницы номенклатуры, резервирования и завершения заявки читают неизменяемый снимок вместо загрузки
+ * всего каталога из БД при каждом показе. Новый снимок подменяет старый атомарно, номер версии растет при
+ * каждой подмене. Снимок перестраивается целиком после синхронизации номенклатуры, если каталог изменился,
+ * а при резервировании новый снимок получает только остатки затронутых запчастей поверх общего списка.
+ * Изменения с других узлов подхватываются периодической проверкой (integration.catalog.check-interval)
+ */
+@Service
+public class CatalogSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    private final PartRepository partRepository;
+    private final ServiceRepository serviceRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+
+    /**
+     * Построение и обновление снимков выполняются по одному, чтобы более позднее чтение из БД
+     * не было перезаписано более ранним
+     */
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Запчасти, остаток которых изменился в закоммиченных транзакциях, но еще не перечитан в снимок
+     */
+    private final Set<Integer> pendingStockIds = ConcurrentHashMap.newKeySet();
+
+    public CatalogSnapshotService(PartRepository partRepository, ServiceRepository serviceRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.partRepository = partRepository;
+        this.serviceRepository = serviceRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        // Остатки перечитываются и после коммита чужой транзакции, поэтому всегда в отдельной транзакции
+        this.readOnlyTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Текущий снимок каталога; при первом обращении строится из БД
+     */
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (rebuildLock) {
+            snapshot = current.get();
+            return snapshot != null ? snapshot : rebuild();
+        }
+    }
+
+    /**
+     * Строит снимок каталога из БД и подменяет им текущий
+     */
+    public CatalogSnapshot rebuild() {
+        synchronized (rebuildLock) {
+            long startedAt = System.nanoTime();
+            CatalogSnapshot previous = current.get();
+            long version = previous != null ? previous.getVersion() + 1 : 1;
+
+            // Снимок заполняется проекциями: сущности запчастей и услуг в сессию не загружаются
+            CatalogSnapshot snapshot = readOnlyTransactionTemplate.execute(status -> new CatalogSnapshot(version,
+                    partRepository.findCatalogItems(), serviceRepository.findCatalogItems()));
+
+            current.set(snapshot);
+            log.info("Снимок каталога построен: версия {}, услуг: {}, запчастей: {}, за {} мс", version,
+                    snapshot.getServices().size(), snapshot.getParts().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            return snapshot;
+        }
+    }
+
+    /**
+     * Перестраивает снимок, если каталог в БД изменился с момента его построения
+     * (число записей или время последнего изменения запчастей и услуг)
+     */
+    @Scheduled(fixedDelayString = "${integration.catalog.check-interval:PT1M}",
+            initialDelayString = "${integration.catalog.check-interval:PT1M}")
+    public void rebuildIfChanged() {
+        CatalogSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            // Снимок еще никому не понадобился
+            return;
+        }
+        try {
+            Object[] parts = partRepository.findCatalogState().get(0);
+            Object[] services = serviceRepository.findCatalogState().get(0);
+            if (!snapshot.matches(((Number) parts[0]).intValue(), (LocalDateTime) parts[1],
+                    ((Number) services[0]).intValue(), (LocalDateTime) services[1])) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при проверке актуальности снимка каталога", e);
+        }
+    }
+
+    /**
+     * Обновляет в снимке остатки запчастей после коммита текущей транзакции (или сразу, если транзакции нет)
+     *
+     * @param partIds ID запчастей, остаток которых изменился
+     */
+    public void refreshStockAfterCommit(Collection<Integer> partIds) {
+        Set<Integer> ids = new HashSet<>(partIds);
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshStock(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshStock(ids);
+            }
+        });
+    }
+
+    /**
+     * ID добавляются в очередь до захвата блокировки: тот, кто первым получит блокировку, перечитает остатки
+     * всех накопившихся запчастей одним запросом, уже после коммита их транзакций. Остальные потоки находят
+     * очередь пустой и не обращаются к БД
+     */
+    private void refreshStock(Set<Integer> partIds) {
+        pendingStockIds.addAll(partIds);
+        try {
+            synchronized (rebuildLock) {
+                if (pendingStockIds.isEmpty()) {
+                    return;
+                }
+                Set<Integer> ids = new HashSet<>(pendingStockIds);
+                pendingStockIds.removeAll(ids);
+
+                CatalogSnapshot snapshot = current.get();
+                if (snapshot == null) {
+                    return;
+                }
+
+                Map<Integer, CatalogPartItem> changed = new HashMap<>();
+                readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                    for (Object[] row : partRepository.findStockByIdIn(ids)) {
+                        CatalogPartItem part = snapshot.getPart((Integer) row[0]);
+                        if (part != null) {
+                            changed.put(part.getId(), part.withStock((Integer) row[1], (LocalDateTime) row[2]));
+                        }
+                    }
+                });
+                if (!changed.isEmpty()) {
+                    current.set(snapshot.withStock(changed));
+                }
+            }
+        } catch (Exception e) {
+            // Снимок останется со старыми остатками до следующей проверки актуальности
+            log.error("Ошибка при обновлении остатков в снимке каталога", e);
+        }
+    }
+
+    /**
+     * Неизменяемый снимок каталога
+     * Снимки с обновленными остатками разделяют список и индекс запчастей последнего полного построения,
+     * а измененные с тех пор запчасти хранят отдельно (stockChanges)
+     */
+    public static class CatalogSnapshot {
+        private final long version;
+        private final List<CatalogPartItem> builtParts;
+        private final List<CatalogServiceItem> services;
+        private final Map<Integer, CatalogPartItem> partsById;
+        private final Map<Integer, CatalogPartItem> stockChanges;
+        private final LocalDateTime partsUpdatedAt;
+        private final LocalDateTime servicesUpdatedAt;
+
+        /**
+         * Список запчастей с примененными stockChanges; собирается при первом обращении
+         */
+        private volatile List<CatalogPartItem> parts;
+
+        CatalogSnapshot(long version, List<CatalogPartItem> parts, List<CatalogServiceItem> services) {
+            this.version = version;
+            this.builtParts = Collections.unmodifiableList(parts);
+            this.services = Collections.unmodifiableList(services);
+            this.stockChanges = Collections.emptyMap();
+            this.parts = this.builtParts;
+
+            Map<Integer, CatalogPartItem> byId = new HashMap<>();
+            LocalDateTime partsMax = null;
+            for (CatalogPartItem part : parts) {
+                byId.put(part.getId(), part);
+                partsMax = max(partsMax, part.getUpdatedAt());
+            }
+            LocalDateTime servicesMax = null;
+            for (CatalogServiceItem service : services) {
+                servicesMax = max(servicesMax, service.getUpdatedAt());
+            }
+            this.partsById = Collections.unmodifiableMap(byId);
+            this.partsUpdatedAt = partsMax;
+            this.servicesUpdatedAt = servicesMax;
+        }
+
+        private CatalogSnapshot(CatalogSnapshot previous, Map<Integer, CatalogPartItem> changed) {
+            this.version = previous.version + 1;
+            this.builtParts = previous.builtParts;
+            this.services = previous.services;
+            this.partsById = previous.partsById;
+            this.servicesUpdatedAt = previous.servicesUpdatedAt;
+
+            Map<Integer, CatalogPartItem> stock = new HashMap<>(previous.stockChanges);
+            stock.putAll(changed);
+            LocalDateTime partsMax = previous.partsUpdatedAt;
+            for (CatalogPartItem part : changed.values()) {
+                partsMax = max(partsMax, part.getUpdatedAt());
+            }
+            this.stockChanges = Collections.unmodifiableMap(stock);
+            this.partsUpdatedAt = partsMax;
+        }
+
+        /**
+         * Следующая версия снимка с новыми остатками указанных запчастей
+         * Копируются только запчасти, измененные с последнего полного построения, а не весь каталог
+         */
+        CatalogSnapshot withStock(Map<Integer, CatalogPartItem> changed) {
+            return new CatalogSnapshot(this, changed);
+        }
+
+        private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+            if (a == null) {
+                return b;
+            }
+            return b != null && b.isAfter(a) ? b : a;
+        }
+
+        boolean matches(int partCount, LocalDateTime partsMaxUpdatedAt, int serviceCount, LocalDateTime servicesMaxUpdatedAt) {
+            return builtParts.size() == partCount && Objects.equals(partsUpdatedAt, partsMaxUpdatedAt)
+                    && services.size() == serviceCount && Objects.equals(servicesUpdatedAt, servicesMaxUpdatedAt);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<CatalogPartItem> getParts() {
+            List<CatalogPartItem> result = parts;
+            if (result == null) {
+                // Одновременная сборка несколькими потоками дает одинаковый список
+                List<CatalogPartItem> merged = new ArrayList<>(builtParts.size());
+                for (CatalogPartItem part : builtParts) {
+                    merged.add(stockChanges.getOrDefault(part.getId(), part));
+                }
+                result = Collections.unmodifiableList(merged);
+                parts = result;
+            }
+            return result;
+        }
+
+        public List<CatalogServiceItem> getServices() {
+            return services;
+        }
+
+        public CatalogPartItem getPart(Integer id) {
+            CatalogPartItem changed = stockChanges.get(id);
+            return changed != null ? changed : partsById.get(id);
+        }
+
+        /**
+         * Запчасти указанного типа
+         */
+        public List<CatalogPartItem> getPartsOfType(Integer typeId) {
+            if (typeId == null) {
+                return Collections.emptyList();
+            }
+            return getParts().stream().filter(p -> typeId.equals(p.getTypeId())).toList();
+        }
+    }
+}
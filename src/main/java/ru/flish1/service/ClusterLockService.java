@@ -0,0 +1,132 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flish1.entity.SchedulerLock;
+import ru.flish1.repository.SchedulerLockRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Блокировки фоновых задач через таблицу scheduler_locks
+ * Когда несколько экземпляров приложения работают с одной БД, задачу с данным именем выполняет только один узел
+ * Блокировка выдается в аренду: если узел упал, не освободив ее, она истекает через заданное время
+ */
+@Service
+public class ClusterLockService {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterLockService.class);
+
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Продление аренды выполняется в транзакции вызывающего кода, если она есть
+     */
+    private final TransactionTemplate joiningTransactionTemplate;
+
+    /**
+     * Идентификатор текущего узла (pid@host)
+     */
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    public ClusterLockService(SchedulerLockRepository schedulerLockRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.joiningTransactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Пытается захватить блокировку
+     *
+     * @param name  имя блокировки
+     * @param lease максимальное время удержания блокировки
+     * @return true, если блокировка захвачена текущим узлом
+     */
+    public boolean tryLock(String name, Duration lease) {
+        createIfMissing(name);
+
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = transactionTemplate.execute(status ->
+                schedulerLockRepository.tryAcquire(name, now, now.plus(lease), nodeId));
+        boolean acquired = updated != null && updated > 0;
+        if (acquired) {
+            log.debug("Блокировка {} захвачена узлом {} до {}", name, nodeId, now.plus(lease));
+        } else {
+            log.debug("Блокировка {} удерживается другим узлом", name);
+        }
+        return acquired;
+    }
+
+    /**
+     * Продлевает аренду удерживаемой блокировки для долгих задач
+     * Вызывается в транзакции, которую защищает блокировка, до ее коммита: продление фиксируется вместе
+     * с данными, а строка блокировки остается заблокированной до коммита, поэтому другой узел не может
+     * захватить блокировку между проверкой аренды и записью данных. Если аренда уже истекла, вызывающий
+     * код должен откатить свою транзакцию
+     *
+     * @param name  имя блокировки
+     * @param lease новое время удержания, считая от текущего момента
+     * @return false, если блокировка уже не принадлежит текущему узлу (аренда истекла)
+     */
+    public boolean extendLock(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = joiningTransactionTemplate.execute(status ->
+                schedulerLockRepository.extend(name, nodeId, now, now.plus(lease)));
+        boolean extended = updated != null && updated > 0;
+        if (extended) {
+            log.debug("Аренда блокировки {} продлена до {}", name, now.plus(lease));
+        } else {
+            log.warn("Аренда блокировки {} не продлена: блокировка уже не принадлежит узлу {}", name, nodeId);
+        }
+        return extended;
+    }
+
+    /**
+     * Освобождает блокировку и сохраняет длительность и итог запуска
+     */
+    public void unlock(String name, Duration runDuration, String runStatus) {
+        Integer updated = transactionTemplate.execute(status ->
+                schedulerLockRepository.release(name, nodeId, LocalDateTime.now(), runDuration.toMillis(), runStatus));
+        if (updated == null || updated == 0) {
+            log.warn("Блокировка {} уже не принадлежит узлу {} (истекла аренда?)", name, nodeId);
+        }
+    }
+
+    /**
+     * Получает текущее состояние блокировки
+     */
+    public Optional<SchedulerLock> getLock(String name) {
+        return schedulerLockRepository.findById(name);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Создает строку блокировки при первом обращении
+     * Если другой узел успел создать ее одновременно, ошибка уникальности игнорируется
+     */
+    private void createIfMissing(String name) {
+        if (schedulerLockRepository.existsById(name)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    schedulerLockRepository.saveAndFlush(new SchedulerLock(name, LocalDateTime.now().minusSeconds(1))));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Блокировка {} уже создана другим узлом", name);
+        }
+    }
+}
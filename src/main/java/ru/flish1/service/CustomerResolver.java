@@ -0,0 +1,82 @@
+package ru.flish1.service;
+
+import org.springframework.stereotype.Service;
+import ru.flish1.dto.CustomerSummary;
+import ru.flish1.repository.CustomerRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Поиск клиентов по customerId заявки
+ * customerId может быть как phoneNumber, так и ID клиента (строка); номер телефона имеет приоритет
+ * Клиенты возвращаются проекциями для отображения, сущности Customer не загружаются
+ */
+@Service
+public class CustomerResolver {
+
+    private final CustomerRepository customerRepository;
+
+    public CustomerResolver(CustomerRepository customerRepository) {
+        this.customerRepository = customerRepository;
+    }
+
+    /**
+     * Находит клиента по customerId одной заявки
+     */
+    public Optional<CustomerSummary> resolve(String customerId) {
+        if (customerId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(resolveAll(Set.of(customerId)).get(customerId));
+    }
+
+    /**
+     * Находит клиентов для набора customerId не более чем двумя запросами:
+     * один запрос по номерам телефонов и один по ID для оставшихся числовых значений
+     *
+     * @param customerIds значения customerId заявок (null и повторы допускаются)
+     * @return customerId -> клиент (для ненайденных customerId записи нет)
+     */
+    public Map<String, CustomerSummary> resolveAll(Collection<String> customerIds) {
+        Set<String> distinctIds = new HashSet<>();
+        for (String customerId : customerIds) {
+            if (customerId != null) {
+                distinctIds.add(customerId);
+            }
+        }
+
+        Map<String, CustomerSummary> result = new HashMap<>();
+        if (distinctIds.isEmpty()) {
+            return result;
+        }
+
+        // Сначала ищем по номеру телефона
+        for (CustomerSummary customer : customerRepository.findSummariesByPhoneNumberIn(distinctIds)) {
+            result.put(customer.getPhoneNumber(), customer);
+        }
+
+        // Ненайденные по телефону числовые значения ищем по ID
+        Map<Integer, String> leftoversById = new HashMap<>();
+        for (String customerId : distinctIds) {
+            if (!result.containsKey(customerId)) {
+                try {
+                    leftoversById.put(Integer.parseInt(customerId), customerId);
+                } catch (NumberFormatException e) {
+                    // customerId не является числом - клиент не найден
+                }
+            }
+        }
+
+        if (!leftoversById.isEmpty()) {
+            for (CustomerSummary customer : customerRepository.findSummariesByIdIn(leftoversById.keySet())) {
+                result.put(leftoversById.get(customer.getId()), customer);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.FixedDelayTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Плановая синхронизация номенклатуры из 1C
+ * Расписание задается либо cron-выражением (integration.sync.schedule.cron),
+ * либо фиксированной паузой между запусками (integration.sync.schedule.fixed-delay)
+ * Если оба параметра пустые, плановая синхронизация отключена
+ */
+@Component
+public class NomenclatureSyncScheduler implements SchedulingConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(NomenclatureSyncScheduler.class);
+
+    private final SyncJobService syncJobService;
+
+    @Value("${integration.sync.schedule.cron:}")
+    private String cron;
+
+    @Value("${integration.sync.schedule.fixed-delay:}")
+    private Duration fixedDelay;
+
+    @Value("${integration.sync.schedule.initial-delay:PT1M}")
+    private Duration initialDelay;
+
+    public NomenclatureSyncScheduler(SyncJobService syncJobService) {
+        this.syncJobService = syncJobService;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        if (cron != null && !cron.isBlank()) {
+            taskRegistrar.addCronTask(this::runScheduledSync, cron);
+            log.info("Плановая синхронизация номенклатуры по расписанию cron: {}", cron);
+        } else if (fixedDelay != null && !fixedDelay.isZero()) {
+            taskRegistrar.addFixedDelayTask(new FixedDelayTask(this::runScheduledSync, fixedDelay, initialDelay));
+            log.info("Плановая синхронизация номенклатуры каждые {} (первый запуск через {})", fixedDelay, initialDelay);
+        } else {
+            log.info("Плановая синхронизация номенклатуры отключена");
+        }
+    }
+
+    /**
+     * Описание расписания для отображения на странице администратора
+     */
+    public String getScheduleDescription() {
+        if (cron != null && !cron.isBlank()) {
+            return "cron: " + cron;
+        }
+        if (fixedDelay != null && !fixedDelay.isZero()) {
+            return "каждые " + fixedDelay;
+        }
+        return "отключена";
+    }
+
+    private void runScheduledSync() {
+        try {
+            syncJobService.startNomenclatureSync("scheduler");
+        } catch (IllegalStateException e) {
+            log.info("Плановая синхронизация пропущена: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Ошибка при запуске плановой синхронизации номенклатуры", e);
+        }
+    }
+}
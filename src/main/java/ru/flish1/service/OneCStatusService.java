@@ -0,0 +1,113 @@
+package ru.flish1.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.stereotype.Service;
+import ru.flish1.client.OneCApiClient;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Состояние связи с 1С по circuit breaker'ам OneCApiClient
+ */
+@Service
+public class OneCStatusService {
+
+    private static final Map<String, String> CIRCUIT_LABELS = new LinkedHashMap<>();
+
+    static {
+        CIRCUIT_LABELS.put(OneCApiClient.NOMENCLATURE_CIRCUIT, "Загрузка номенклатуры");
+        CIRCUIT_LABELS.put(OneCApiClient.ORDERS_CIRCUIT, "Отправка заказов");
+        CIRCUIT_LABELS.put(OneCApiClient.PAYMENT_STATUS_CIRCUIT, "Проверка оплаты");
+        CIRCUIT_LABELS.put(OneCApiClient.CASH_PAYMENT_CIRCUIT, "Подтверждение наличной оплаты");
+    }
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    public OneCStatusService(CircuitBreakerRegistry circuitBreakerRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+    }
+
+    /**
+     * Состояние всех circuit breaker'ов вызовов 1С
+     */
+    public List<CircuitStatus> getCircuitStatuses() {
+        List<CircuitStatus> statuses = new ArrayList<>();
+        CIRCUIT_LABELS.forEach((name, label) -> {
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+            CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+            statuses.add(new CircuitStatus(name, label, circuitBreaker.getState(), metrics.getFailureRate(),
+                    metrics.getSlowCallRate(), metrics.getNumberOfNotPermittedCalls()));
+        });
+        return statuses;
+    }
+
+    /**
+     * Функции, недоступные из-за открытого (или проверяемого) circuit breaker'а
+     */
+    public List<String> getUnavailableFunctions() {
+        List<String> unavailable = new ArrayList<>();
+        for (CircuitStatus status : getCircuitStatuses()) {
+            if (!status.isAvailable()) {
+                unavailable.add(status.getLabel());
+            }
+        }
+        return unavailable;
+    }
+
+    /**
+     * Состояние одного circuit breaker'а
+     */
+    public static class CircuitStatus {
+        private final String name;
+        private final String label;
+        private final CircuitBreaker.State state;
+        private final float failureRate;
+        private final float slowCallRate;
+        private final long notPermittedCalls;
+
+        public CircuitStatus(String name, String label, CircuitBreaker.State state, float failureRate,
+                             float slowCallRate, long notPermittedCalls) {
+            this.name = name;
+            this.label = label;
+            this.state = state;
+            this.failureRate = failureRate;
+            this.slowCallRate = slowCallRate;
+            this.notPermittedCalls = notPermittedCalls;
+        }
+
+        public boolean isAvailable() {
+            return state == CircuitBreaker.State.CLOSED || state == CircuitBreaker.State.DISABLED;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public CircuitBreaker.State getState() {
+            return state;
+        }
+
+        /**
+         * Доля ошибок в процентах или -1, если вызовов еще недостаточно для расчета
+         */
+        public float getFailureRate() {
+            return failureRate;
+        }
+
+        public float getSlowCallRate() {
+            return slowCallRate;
+        }
+
+        public long getNotPermittedCalls() {
+            return notPermittedCalls;
+        }
+    }
+}
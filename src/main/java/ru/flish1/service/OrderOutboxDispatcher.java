@@ -0,0 +1,230 @@
+package ru.flish1.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.flish1.client.OneCApiClient;
+import ru.flish1.client.OneCUnavailableException;
+import ru.flish1.dto.CompletedOrderPayload;
+import ru.flish1.dto.PaymentStatusResponse;
+import ru.flish1.dto.SuccessResponse;
+import ru.flish1.entity.OrderOutbox;
+import ru.flish1.entity.Request;
+import ru.flish1.repository.OrderOutboxRepository;
+import ru.flish1.repository.RequestRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Фоновая отправка выполненных заказов из order_outbox в 1C
+ * Сообщения выбираются пачками, отправляются вне транзакции, результат каждой отправки фиксируется
+ * отдельной короткой транзакцией. При ошибке попытка повторяется с экспоненциальной задержкой
+ * После заказов отправляются подтверждения наличной оплаты, принятые до передачи заказа в 1С
+ * Запуски на разных узлах разделяются блокировкой в БД
+ */
+@Component
+public class OrderOutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderOutboxDispatcher.class);
+
+    static final String ORDER_OUTBOX_LOCK = "order-outbox";
+
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final OneCApiClient oneCApiClient;
+    private final RequestService requestService;
+    private final RequestRepository requestRepository;
+    private final PaymentStatusCache paymentStatusCache;
+    private final ClusterLockService clusterLockService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${integration.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${integration.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${integration.outbox.retry.initial-delay:PT10S}")
+    private Duration retryInitialDelay;
+
+    @Value("${integration.outbox.retry.max-delay:PT30M}")
+    private Duration retryMaxDelay;
+
+    @Value("${integration.outbox.lock.lease:PT5M}")
+    private Duration lockLease;
+
+    public OrderOutboxDispatcher(OrderOutboxRepository orderOutboxRepository, OneCApiClient oneCApiClient,
+                                 RequestService requestService, RequestRepository requestRepository,
+                                 PaymentStatusCache paymentStatusCache, ClusterLockService clusterLockService,
+                                 ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.oneCApiClient = oneCApiClient;
+        this.requestService = requestService;
+        this.requestRepository = requestRepository;
+        this.paymentStatusCache = paymentStatusCache;
+        this.clusterLockService = clusterLockService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Периодически отправляет накопившиеся заказы
+     */
+    @Scheduled(fixedDelayString = "${integration.outbox.fixed-delay:PT5S}",
+            initialDelayString = "${integration.outbox.initial-delay:PT10S}")
+    public void dispatchPending() {
+        if (!clusterLockService.tryLock(ORDER_OUTBOX_LOCK, lockLease)) {
+            log.debug("Отправка заказов в 1C пропущена: блокировка удерживается другим узлом");
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        String runStatus = "COMPLETED";
+        try {
+            // Пока выбирается полная пачка, продолжаем отправку, но не дольше аренды блокировки
+            List<OrderOutbox> batch;
+            boolean oneCAvailable = true;
+            do {
+                batch = orderOutboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                        OrderOutbox.STATUS_PENDING, LocalDateTime.now(), PageRequest.of(0, batchSize));
+                for (OrderOutbox outbox : batch) {
+                    if (!dispatch(outbox)) {
+                        oneCAvailable = false;
+                        break;
+                    }
+                }
+            } while (oneCAvailable && batch.size() == batchSize
+                    && Duration.ofNanos(System.nanoTime() - startedAt).compareTo(lockLease.dividedBy(2)) < 0);
+
+            if (oneCAvailable) {
+                sendPendingCashConfirmations();
+            }
+        } catch (Exception e) {
+            runStatus = "FAILED";
+            log.error("Ошибка при отправке очереди заказов в 1C", e);
+        } finally {
+            clusterLockService.unlock(ORDER_OUTBOX_LOCK, Duration.ofNanos(System.nanoTime() - startedAt), runStatus);
+        }
+    }
+
+    /**
+     * Отправляет одно сообщение и фиксирует результат
+     *
+     * @return false, если 1С недоступна (circuit breaker открыт) и отправку пачки нужно прекратить
+     */
+    private boolean dispatch(OrderOutbox outbox) {
+        SuccessResponse response;
+        try {
+            CompletedOrderPayload payload = objectMapper.readValue(outbox.getPayload(), CompletedOrderPayload.class);
+            response = oneCApiClient.sendCompletedOrder(payload);
+            if (response == null) {
+                throw new RuntimeException("Получен пустой ответ от 1C");
+            }
+        } catch (OneCUnavailableException e) {
+            // Запрос не отправлялся, поэтому попытка не засчитывается
+            log.info("Отправка заказов в 1C приостановлена: {}", e.getMessage());
+            return false;
+        } catch (Exception e) {
+            transactionTemplate.executeWithoutResult(status -> markAttemptFailed(outbox.getId(), e));
+            return true;
+        }
+        transactionTemplate.executeWithoutResult(status -> markSent(outbox.getId(), response));
+        return true;
+    }
+
+    /**
+     * Фиксирует успешную отправку и записывает ID документа 1С в заявку
+     */
+    private void markSent(Long outboxId, SuccessResponse response) {
+        OrderOutbox outbox = orderOutboxRepository.findById(outboxId)
+                .orElseThrow(() -> new IllegalArgumentException("Сообщение очереди не найдено: " + outboxId));
+        outbox.setStatus(OrderOutbox.STATUS_SENT);
+        outbox.setAttempts(outbox.getAttempts() + 1);
+        outbox.setSentAt(LocalDateTime.now());
+        outbox.setDocument1cId(response.getDocument1cId());
+        outbox.setDocument1cNumber(response.getDocument1cNumber());
+        outbox.setLastError(null);
+        orderOutboxRepository.save(outbox);
+
+        requestService.attachDocument1cId(outbox.getRequestId(), response.getDocument1cId());
+        log.info("Заказ заявки {} отправлен в 1C. Документ: {}, ID: {}",
+                outbox.getRequestId(), response.getDocument1cNumber(), response.getDocument1cId());
+    }
+
+    /**
+     * Отправляет подтверждения наличной оплаты заявок, у которых появился документ 1С
+     * Неотправленные из-за ошибки подтверждения повторяются при следующем запуске; подтверждения,
+     * отклоненные 1С как ошибочные (4xx, кроме 408 и 429), снимаются с отправки
+     */
+    private void sendPendingCashConfirmations() {
+        List<Request> requests = requestRepository.findPendingCashConfirmations(PageRequest.of(0, batchSize));
+        for (Request request : requests) {
+            String documentId = request.getDocument1cId();
+            try {
+                PaymentStatusResponse response = oneCApiClient.confirmCashPayment(documentId);
+                paymentStatusCache.put(documentId, response);
+                log.info("Наличная оплата заявки {} подтверждена в 1С для документа {}", request.getId(), documentId);
+            } catch (OneCUnavailableException e) {
+                log.info("Отправка подтверждений наличной оплаты в 1C приостановлена: {}", e.getMessage());
+                return;
+            } catch (Exception e) {
+                if (isRetryable(e)) {
+                    log.warn("Подтверждение наличной оплаты заявки {} не отправлено в 1С, будет повторено: {}",
+                            request.getId(), e.getMessage());
+                    continue;
+                }
+                log.error("Подтверждение наличной оплаты заявки {} отклонено 1С: {}", request.getId(), e.getMessage());
+            }
+            requestService.clearCashConfirmationPending(request.getId());
+        }
+    }
+
+    /**
+     * Фиксирует неудачную попытку и назначает следующую с экспоненциальной задержкой
+     * Ошибки клиента (4xx, кроме 408 и 429) повторно не отправляются
+     */
+    private void markAttemptFailed(Long outboxId, Exception error) {
+        OrderOutbox outbox = orderOutboxRepository.findById(outboxId)
+                .orElseThrow(() -> new IllegalArgumentException("Сообщение очереди не найдено: " + outboxId));
+        int attempts = outbox.getAttempts() + 1;
+        outbox.setAttempts(attempts);
+        outbox.setLastError(error.getMessage());
+
+        if (attempts >= maxAttempts || !isRetryable(error)) {
+            outbox.setStatus(OrderOutbox.STATUS_FAILED);
+            log.error("Заказ заявки {} не отправлен в 1C после {} попыток: {}",
+                    outbox.getRequestId(), attempts, error.getMessage());
+        } else {
+            Duration delay = retryDelay(attempts);
+            outbox.setNextAttemptAt(LocalDateTime.now().plus(delay));
+            log.warn("Попытка {} отправки заказа заявки {} в 1C не удалась, следующая через {}: {}",
+                    attempts, outbox.getRequestId(), delay, error.getMessage());
+        }
+        orderOutboxRepository.save(outbox);
+    }
+
+    private Duration retryDelay(int attempts) {
+        Duration delay = retryInitialDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(retryMaxDelay) > 0 ? retryMaxDelay : delay;
+    }
+
+    private boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException clientError) {
+                return clientError.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+                        || clientError.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+            }
+        }
+        return true;
+    }
+}
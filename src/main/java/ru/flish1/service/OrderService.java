@@ -1,18 +1,25 @@
 package ru.flish1.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.flish1.client.OneCApiClient;
 import ru.flish1.dto.CompletedOrderItem;
 import ru.flish1.dto.CompletedOrderPayload;
 import ru.flish1.dto.SuccessResponse;
+import ru.flish1.entity.OrderOutbox;
 import ru.flish1.entity.Part;
 import ru.flish1.entity.Request;
 import ru.flish1.entity.ReservePart;
 import ru.flish1.entity.ServiceEntity;
 import ru.flish1.repository.CustomerRepository;
+import ru.flish1.repository.OrderOutboxRepository;
 import ru.flish1.repository.PartRepository;
 import ru.flish1.repository.RequestRepository;
 import ru.flish1.repository.ReservePartRepository;
@@ -21,12 +28,17 @@ import ru.flish1.repository.ServiceRepository;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Сервис для работы с заказами
- * Заказ отправляется в 1C, но не хранится в БД
  * Информация о заказе собирается автоматически из заявки
+ * При завершении заявки заказ сохраняется в очередь order_outbox и отправляется в 1C в фоне
  */
 @Service
 public class OrderService {
@@ -39,19 +51,79 @@ public class OrderService {
     private final ReservePartRepository reservePartRepository;
     private final PartRepository partRepository;
     private final ServiceRepository serviceRepository;
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final RequestService requestService;
+    private final PartReservationService partReservationService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransactionTemplate;
 
     public OrderService(OneCApiClient oneCApiClient,
                         RequestRepository requestRepository,
                         CustomerRepository customerRepository,
                         ReservePartRepository reservePartRepository,
                         PartRepository partRepository,
-                        ServiceRepository serviceRepository) {
+                        ServiceRepository serviceRepository,
+                        OrderOutboxRepository orderOutboxRepository,
+                        RequestService requestService,
+                        PartReservationService partReservationService,
+                        ObjectMapper objectMapper,
+                        PlatformTransactionManager transactionManager) {
         this.oneCApiClient = oneCApiClient;
         this.requestRepository = requestRepository;
         this.customerRepository = customerRepository;
         this.reservePartRepository = reservePartRepository;
         this.partRepository = partRepository;
         this.serviceRepository = serviceRepository;
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.requestService = requestService;
+        this.partReservationService = partReservationService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Завершает заявку и ставит выполненный заказ в очередь на отправку в 1C
+     * Данные заказа сохраняются в order_outbox в той же транзакции, что и завершение заявки,
+     * поэтому заказ не теряется при недоступности 1C; отправку выполняет OrderOutboxDispatcher
+     * Резервирования заявки закрываются, неиспользованный остаток резервов возвращается на склад
+     *
+     * @param requestId         ID заявки в статусе "in_progress"
+     * @param sourceOrderId     идентификатор заказа в системе-источнике
+     * @param serviceIds        список идентификаторов услуг
+     * @param serviceQuantities список количеств услуг
+     * @param paymentMethod     метод оплаты (cash, card, transfer)
+     * @return сохраненное исходящее сообщение
+     */
+    @Transactional
+    public OrderOutbox completeRequestWithOrder(
+            Integer requestId,
+            String sourceOrderId,
+            List<Integer> serviceIds,
+            List<Double> serviceQuantities,
+            String paymentMethod
+    ) {
+        // Материалы не передаются отдельно - они берутся из резервирований
+        CompletedOrderPayload payload = buildOrderPayload(requestId, sourceOrderId, serviceIds, serviceQuantities,
+                new ArrayList<>(), new ArrayList<>(), paymentMethod);
+
+        requestService.completeRequestWithPayment(requestId, paymentMethod, null);
+        // Использованные запчасти уже в заказе: резервы закрываются, неиспользованный остаток возвращается на склад
+        partReservationService.closeForCompletedRequest(requestId);
+
+        OrderOutbox outbox = new OrderOutbox();
+        outbox.setRequestId(requestId);
+        outbox.setSourceOrderId(sourceOrderId);
+        outbox.setStatus(OrderOutbox.STATUS_PENDING);
+        try {
+            outbox.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Не удалось сохранить данные заказа: " + e.getMessage(), e);
+        }
+        OrderOutbox saved = orderOutboxRepository.save(outbox);
+        log.info("Заказ поставлен в очередь на отправку в 1C: requestId={}, sourceOrderId={}, outboxId={}",
+                requestId, sourceOrderId, saved.getId());
+        return saved;
     }
 
     /**
@@ -59,6 +131,9 @@ public class OrderService {
      * Цены берутся из номенклатуры в БД
      * Поддерживает множественный выбор услуг и материалов
      * Заказ не сохраняется в БД, только отправляется в 1C
+     * Отправка выполняется в три этапа, чтобы соединение с БД не удерживалось на время ожидания 1C:
+     * данные заказа собираются в короткой транзакции только для чтения, запрос в 1C выполняется
+     * вне транзакции, а ID созданного документа сохраняется в отдельной короткой транзакции
      *
      * @param requestId          ID завершенной заявки
      * @param sourceOrderId      идентификатор заказа в системе-источнике
@@ -69,7 +144,6 @@ public class OrderService {
      * @param paymentMethod      метод оплаты (cash, card, transfer)
      * @return результат отправки заказа (SuccessResponse или null при ошибке)
      */
-    @Transactional
     public OrderResult createAndSendOrderFromRequest(
             Integer requestId,
             String sourceOrderId,
@@ -78,6 +152,50 @@ public class OrderService {
             List<Integer> materialPartIds,
             List<Double> materialQuantities,
             String paymentMethod
+    ) {
+        // Этап 1: собираем данные заказа в транзакции только для чтения
+        CompletedOrderPayload payload = readOnlyTransactionTemplate.execute(status ->
+                buildOrderPayload(requestId, sourceOrderId, serviceIds, serviceQuantities,
+                        materialPartIds, materialQuantities, paymentMethod));
+
+        // Этап 2: отправляем в 1C без открытой транзакции (заказ в БД не сохраняем)
+        try {
+            SuccessResponse response = oneCApiClient.sendCompletedOrder(payload);
+
+            if (response == null) {
+                throw new RuntimeException("Получен пустой ответ от 1C");
+            }
+
+            log.info("Заказ успешно отправлен в 1C. Документ: {}, ID: {}",
+                    response.getDocument1cNumber(), response.getDocument1cId());
+
+            // Этап 3: сохраняем ID документа в заявке, если он еще не был присвоен
+            if (response.getDocument1cId() != null) {
+                requestService.attachDocument1cIdIfAbsent(requestId, response.getDocument1cId());
+            }
+
+            return new OrderResult(true, response.getDocument1cId(), response.getDocument1cNumber(), null);
+        } catch (Exception e) {
+            log.error("Ошибка при отправке заказа в 1C", e);
+            return new OrderResult(false, null, null, "Ошибка: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Собирает данные выполненного заказа для 1C из заявки
+     * Цены берутся из номенклатуры в БД, использованные запчасти - из активных резервирований
+     * и резервирований, закрытых при завершении заявки
+     * Услуги, материалы и резервирования с запчастями загружаются одним запросом каждые,
+     * поэтому число запросов не зависит от количества строк заказа
+     */
+    private CompletedOrderPayload buildOrderPayload(
+            Integer requestId,
+            String sourceOrderId,
+            List<Integer> serviceIds,
+            List<Double> serviceQuantities,
+            List<Integer> materialPartIds,
+            List<Double> materialQuantities,
+            String paymentMethod
     ) {
         // Получаем заявку
         Request request = requestRepository.findById(requestId)
@@ -108,6 +226,10 @@ public class OrderService {
         // Формируем дату завершения в формате ISO 8601
         String completionDate = completionDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
 
+        // Загружаем все услуги и материалы заказа одним запросом на таблицу
+        Map<Integer, ServiceEntity> servicesById = loadByIds(serviceRepository, serviceIds, ServiceEntity::getId);
+        Map<Integer, Part> materialPartsById = loadByIds(partRepository, materialPartIds, Part::getId);
+
         // Создаем список услуг
         List<CompletedOrderItem> services = new ArrayList<>();
         if (serviceIds != null && serviceQuantities != null) {
@@ -116,8 +238,10 @@ public class OrderService {
                 double quantity = i < serviceQuantities.size() ? serviceQuantities.get(i) : 0;
 
                 if (serviceId != null && quantity > 0) {
-                    ServiceEntity serviceEntity = serviceRepository.findById(serviceId)
-                            .orElseThrow(() -> new IllegalArgumentException("Услуга не найдена: " + serviceId));
+                    ServiceEntity serviceEntity = servicesById.get(serviceId);
+                    if (serviceEntity == null) {
+                        throw new IllegalArgumentException("Услуга не найдена: " + serviceId);
+                    }
 
                     if (serviceEntity.getPrice() == null || serviceEntity.getPrice() <= 0) {
                         throw new IllegalArgumentException("Цена для услуги '" + serviceEntity.getName() + "' не установлена в 1C");
@@ -150,8 +274,10 @@ public class OrderService {
                 double quantity = i < materialQuantities.size() ? materialQuantities.get(i) : 0;
 
                 if (materialPartId != null && quantity > 0) {
-                    Part materialPart = partRepository.findById(materialPartId)
-                            .orElseThrow(() -> new IllegalArgumentException("Запчасть-материал не найдена: " + materialPartId));
+                    Part materialPart = materialPartsById.get(materialPartId);
+                    if (materialPart == null) {
+                        throw new IllegalArgumentException("Запчасть-материал не найдена: " + materialPartId);
+                    }
 
                     if (materialPart.getPrice() == null || materialPart.getPrice() <= 0) {
                         throw new IllegalArgumentException("Цена для материала '" + materialPart.getName() + "' не установлена в 1C");
@@ -171,8 +297,10 @@ public class OrderService {
             }
         }
 
-        // Добавляем использованные запчасти из резервирований
-        List<ReservePart> reserveParts = reservePartRepository.findByRequestIdAndStatus(requestId, "active");
+        // Добавляем использованные запчасти из резервирований (резервирования загружаются вместе с запчастями)
+        // Резервы завершенной заявки закрыты в статусе used: заказ, отправляемый после завершения, их тоже учитывает
+        List<ReservePart> reserveParts = reservePartRepository.findWithPartByRequestIdAndStatusIn(requestId,
+                List.of("active", "used"));
         for (ReservePart reservePart : reserveParts) {
             if (reservePart.getUsedQuantity() != null && reservePart.getUsedQuantity() > 0) {
                 Part part = reservePart.getPart();
@@ -210,23 +338,27 @@ public class OrderService {
         payload.setMaterials(materials);
         payload.setPaymentMethod(paymentMethod);
         payload.setIsPaid(false); // По умолчанию документ не оплачен, оплата подтверждается отдельно
+        return payload;
+    }
 
-        // Отправляем в 1C (не сохраняем в БД)
-        try {
-            SuccessResponse response = oneCApiClient.sendCompletedOrder(payload);
-
-            if (response == null) {
-                throw new RuntimeException("Получен пустой ответ от 1C");
-            }
-
-            log.info("Заказ успешно отправлен в 1C. Документ: {}, ID: {}",
-                    response.getDocument1cNumber(), response.getDocument1cId());
-
-            return new OrderResult(true, response.getDocument1cId(), response.getDocument1cNumber(), null);
-        } catch (Exception e) {
-            log.error("Ошибка при отправке заказа в 1C", e);
-            return new OrderResult(false, null, null, "Ошибка: " + e.getMessage());
+    /**
+     * Загружает записи по списку ID одним запросом и индексирует их по ID
+     */
+    private <T> Map<Integer, T> loadByIds(JpaRepository<T, Integer> repository, List<Integer> ids,
+                                          Function<T, Integer> idGetter) {
+        Map<Integer, T> byId = new HashMap<>();
+        if (ids == null) {
+            return byId;
+        }
+        Set<Integer> distinctIds = new HashSet<>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.isEmpty()) {
+            return byId;
+        }
+        for (T entity : repository.findAllById(distinctIds)) {
+            byId.put(idGetter.apply(entity), entity);
         }
+        return byId;
     }
 
     /**
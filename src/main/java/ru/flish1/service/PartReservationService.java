@@ -0,0 +1,172 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flish1.entity.Part;
+import ru.flish1.entity.Request;
+import ru.flish1.entity.ReservePart;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.ReservePartRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Сервис резервирования запчастей со склада
+ * Part.quantity хранит свободный остаток: резерв списывает его условным UPDATE,
+ * снятие резерва возвращает количество обратно. Блокировка строки запчасти держится
+ * только на время одного UPDATE, поэтому резервирования разных заявок не выстраиваются в очередь
+ */
+@Service
+public class PartReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PartReservationService.class);
+
+    private final PartRepository partRepository;
+    private final ReservePartRepository reservePartRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    public PartReservationService(PartRepository partRepository, ReservePartRepository reservePartRepository,
+                                  CatalogSnapshotService catalogSnapshotService) {
+        this.partRepository = partRepository;
+        this.reservePartRepository = reservePartRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    /**
+     * Резервирует запчасти для заявки
+     * Если хотя бы одной запчасти не хватает, транзакция откатывается целиком и ничего не резервируется
+     *
+     * @param request    заявка
+     * @param partIds    список идентификаторов запчастей
+     * @param quantities список количеств (строки с пустым или неположительным количеством пропускаются)
+     * @param used       true - резерв сразу считается использованным (добавление запчастей при завершении заявки)
+     * @return созданные резервирования
+     */
+    @Transactional
+    public List<ReservePart> reserve(Request request, List<Integer> partIds, List<Integer> quantities, boolean used) {
+        // Суммируем количество по запчастям; TreeMap задает одинаковый порядок блокировки строк во всех транзакциях
+        Map<Integer, Integer> requiredByPart = new TreeMap<>();
+        for (int i = 0; i < partIds.size(); i++) {
+            Integer partId = partIds.get(i);
+            Integer quantity = i < quantities.size() ? quantities.get(i) : 0;
+            if (partId != null && quantity != null && quantity > 0) {
+                requiredByPart.merge(partId, quantity, Integer::sum);
+            }
+        }
+
+        if (requiredByPart.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, Part> partsById = new HashMap<>();
+        for (Part part : partRepository.findAllById(requiredByPart.keySet())) {
+            partsById.put(part.getId(), part);
+        }
+
+        List<ReservePart> reserveParts = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : requiredByPart.entrySet()) {
+            Integer partId = entry.getKey();
+            int quantity = entry.getValue();
+
+            Part part = partsById.get(partId);
+            if (part == null) {
+                throw new IllegalArgumentException("Запчасть не найдена: " + partId);
+            }
+
+            if (partRepository.reserveStock(partId, quantity) == 0) {
+                throw new IllegalArgumentException("Недостаточно запчасти '" + part.getName() + "' на складе: доступно "
+                        + (part.getQuantity() != null ? part.getQuantity() : 0) + ", требуется " + quantity);
+            }
+
+            ReservePart reservePart = new ReservePart();
+            reservePart.setRequest(request);
+            reservePart.setPart(part);
+            reservePart.setQuantity(quantity);
+            reservePart.setUsedQuantity(used ? quantity : 0);
+            reservePart.setStatus("active");
+            reservePart.setStockReserved(true);
+            reserveParts.add(reservePart);
+        }
+
+        List<ReservePart> saved = reservePartRepository.saveAll(reserveParts);
+        catalogSnapshotService.refreshStockAfterCommit(requiredByPart.keySet());
+        log.info("Для заявки ID={} зарезервировано позиций: {}", request.getId(), saved.size());
+        return saved;
+    }
+
+    /**
+     * Снимает резервирования и возвращает зарезервированное количество на склад
+     * Активное резервирование удаляется условным DELETE, и количество возвращается на склад, только если
+     * удаление прошло: резерв, параллельно закрытый ReservationSweeper, на склад второй раз не вернется
+     *
+     * @param reservePartIds список идентификаторов резервирований
+     */
+    @Transactional
+    public void release(List<Long> reservePartIds) {
+        Set<Integer> releasedPartIds = new HashSet<>();
+        for (ReservePart reservePart : reservePartRepository.findAllById(reservePartIds)) {
+            if (reservePartRepository.deleteIfActive(reservePart.getId()) == 0) {
+                // Резерв уже закрыт: его количество на склад вернул тот, кто его закрыл
+                reservePartRepository.delete(reservePart);
+                log.info("Резервирование ID={} удалено, резерв был снят ранее", reservePart.getId());
+                continue;
+            }
+            if (reservePart.getQuantity() != null && Boolean.TRUE.equals(reservePart.getStockReserved())) {
+                partRepository.releaseStock(reservePart.getPart().getId(), reservePart.getQuantity());
+                releasedPartIds.add(reservePart.getPart().getId());
+            }
+            log.info("Резервирование ID={} снято, на склад возвращено: {}", reservePart.getId(), reservePart.getQuantity());
+        }
+        catalogSnapshotService.refreshStockAfterCommit(releasedPartIds);
+    }
+
+    /**
+     * Закрывает резервирования завершенной заявки: использованное количество списано в заказ,
+     * а неиспользованный остаток резерва (quantity - usedQuantity) возвращается на склад
+     * Каждый резерв закрывается условным UPDATE, поэтому резерв, параллельно снятый release,
+     * на склад второй раз не вернется
+     *
+     * @param requestId ID завершаемой заявки
+     */
+    @Transactional
+    public void closeForCompletedRequest(Integer requestId) {
+        Set<Integer> releasedPartIds = new HashSet<>();
+        int closed = 0;
+        for (ReservePart reservePart : reservePartRepository.findWithPartByRequestIdAndStatusIn(requestId, List.of("active"))) {
+            if (reservePartRepository.markUsedIfActive(reservePart.getId()) == 0) {
+                continue;
+            }
+            closed++;
+            int quantity = reservePart.getQuantity() != null ? reservePart.getQuantity() : 0;
+            int used = reservePart.getUsedQuantity() != null ? reservePart.getUsedQuantity() : 0;
+            if (quantity > used && Boolean.TRUE.equals(reservePart.getStockReserved())) {
+                partRepository.releaseStock(reservePart.getPart().getId(), quantity - used);
+                releasedPartIds.add(reservePart.getPart().getId());
+            }
+        }
+        catalogSnapshotService.refreshStockAfterCommit(releasedPartIds);
+        log.info("Для завершенной заявки ID={} закрыто резервирований: {}, возвращен на склад остаток по запчастям: {}",
+                requestId, closed, releasedPartIds.size());
+    }
+
+    /**
+     * Количество запчастей в активных резервах по ID запчасти
+     * Свободный для резервирования остаток - Part.quantity, остаток на складе - их сумма
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, Long> getReservedQuantities() {
+        Map<Integer, Long> reserved = new HashMap<>();
+        for (Object[] row : reservePartRepository.sumActiveQuantityByPart()) {
+            reserved.put((Integer) row[0], ((Number) row[1]).longValue());
+        }
+        return reserved;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.flish1.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.flish1.client.OneCApiClient;
+import ru.flish1.dto.PaymentStatusResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш статусов оплаты документов 1С
+ * Неоплаченный статус хранится integration.payment-status-cache.ttl, оплаченный - бессрочно (оплата не отменяется)
+ * Одновременные запросы статуса одного документа объединяются: в 1С уходит только один запрос,
+ * остальные ждут его результата
+ */
+@Service
+public class PaymentStatusCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentStatusCache.class);
+
+    private final OneCApiClient oneCApiClient;
+    private final Map<String, CachedStatus> statuses = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<PaymentStatusResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private volatile long lastPurgeNanos = System.nanoTime();
+
+    @Value("${integration.payment-status-cache.ttl:PT30S}")
+    private Duration ttl;
+
+    public PaymentStatusCache(OneCApiClient oneCApiClient, MeterRegistry meterRegistry) {
+        this.oneCApiClient = oneCApiClient;
+        this.hits = meterRegistry.counter("onec.payment.status.cache", "result", "hit");
+        this.misses = meterRegistry.counter("onec.payment.status.cache", "result", "miss");
+        this.coalesced = meterRegistry.counter("onec.payment.status.cache", "result", "coalesced");
+        meterRegistry.gaugeMapSize("onec.payment.status.cache.size", Tags.empty(), statuses);
+    }
+
+    /**
+     * Возвращает статус оплаты документа из кэша или запрашивает его в 1С
+     *
+     * @param documentId идентификатор документа в 1С
+     * @return ответ с информацией о статусе оплаты
+     */
+    public PaymentStatusResponse getPaymentStatus(String documentId) {
+        CachedStatus cached = statuses.get(documentId);
+        if (cached != null && !cached.isExpired()) {
+            hits.increment();
+            return cached.response;
+        }
+
+        CompletableFuture<PaymentStatusResponse> request = new CompletableFuture<>();
+        CompletableFuture<PaymentStatusResponse> existing = inFlight.putIfAbsent(documentId, request);
+        if (existing != null) {
+            coalesced.increment();
+            log.debug("Запрос статуса оплаты документа {} объединен с выполняющимся", documentId);
+            return await(existing);
+        }
+
+        misses.increment();
+        try {
+            PaymentStatusResponse response = oneCApiClient.checkPaymentStatus(documentId);
+            put(documentId, response);
+            request.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            request.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(documentId, request);
+        }
+    }
+
+    /**
+     * Сохраняет известный статус оплаты (например, ответ на подтверждение наличной оплаты)
+     */
+    public void put(String documentId, PaymentStatusResponse response) {
+        if (response == null) {
+            statuses.remove(documentId);
+            return;
+        }
+        boolean paid = Boolean.TRUE.equals(response.getIsPaid());
+        statuses.put(documentId, new CachedStatus(response, paid ? Long.MAX_VALUE : System.nanoTime() + ttl.toNanos()));
+        // Просроченные неоплаченные статусы удаляются не чаще одного раза за TTL
+        long now = System.nanoTime();
+        if (now - lastPurgeNanos > ttl.toNanos()) {
+            lastPurgeNanos = now;
+            statuses.values().removeIf(CachedStatus::isExpired);
+        }
+    }
+
+    private PaymentStatusResponse await(CompletableFuture<PaymentStatusResponse> request) {
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static class CachedStatus {
+        private final PaymentStatusResponse response;
+        private final long expiresAtNanos;
+
+        private CachedStatus(PaymentStatusResponse response, long expiresAtNanos) {
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired() {
+            return expiresAtNanos != Long.MAX_VALUE && System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flish1.client.OneCUnavailableException;
+import ru.flish1.dto.PaymentStatusResponse;
+import ru.flish1.entity.Request;
+import ru.flish1.repository.RequestRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Фоновая проверка оплаты завершенных заявок в 1С
+ * Заявки с документом 1С выбираются постранично, статус оплаты запрашивается параллельно
+ * (не более integration.payment-poll.parallelism запросов одновременно), оплаченные заявки
+ * переводятся в статус "paid" одним запросом на страницу
+ * Интервал до следующей проверки растет с возрастом документа: свежие документы проверяются часто,
+ * давно неоплаченные - редко
+ * Наличная оплата подтверждается инженером вручную и здесь не проверяется
+ */
+@Component
+public class PaymentStatusPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentStatusPoller.class);
+
+    static final String PAYMENT_POLL_LOCK = "payment-poll";
+
+    private final RequestRepository requestRepository;
+    private final PaymentStatusCache paymentStatusCache;
+    private final ClusterLockService clusterLockService;
+    private final TaskExecutor paymentPollExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${integration.payment-poll.page-size:100}")
+    private int pageSize;
+
+    @Value("${integration.payment-poll.min-interval:PT5M}")
+    private Duration minInterval;
+
+    @Value("${integration.payment-poll.max-interval:PT12H}")
+    private Duration maxInterval;
+
+    /**
+     * Интервал проверки равен возрасту документа, деленному на этот коэффициент (в пределах min/max)
+     */
+    @Value("${integration.payment-poll.age-divisor:10}")
+    private int ageDivisor;
+
+    @Value("${integration.payment-poll.lock.lease:PT10M}")
+    private Duration lockLease;
+
+    public PaymentStatusPoller(RequestRepository requestRepository, PaymentStatusCache paymentStatusCache,
+                               ClusterLockService clusterLockService,
+                               @Qualifier("paymentPollExecutor") TaskExecutor paymentPollExecutor,
+                               PlatformTransactionManager transactionManager) {
+        this.requestRepository = requestRepository;
+        this.paymentStatusCache = paymentStatusCache;
+        this.clusterLockService = clusterLockService;
+        this.paymentPollExecutor = paymentPollExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${integration.payment-poll.fixed-delay:PT1M}",
+            initialDelayString = "${integration.payment-poll.initial-delay:PT30S}")
+    public void pollPayments() {
+        if (!clusterLockService.tryLock(PAYMENT_POLL_LOCK, lockLease)) {
+            log.debug("Проверка оплаты пропущена: блокировка удерживается другим узлом");
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        String runStatus = "COMPLETED";
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int checked = 0;
+            int paid = 0;
+            Integer afterId = 0;
+            List<Request> page;
+            do {
+                page = requestRepository.findDuePaymentChecks(now, afterId, PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                paid += processPage(page, now);
+                checked += page.size();
+                afterId = page.get(page.size() - 1).getId();
+            } while (page.size() == pageSize
+                    && Duration.ofNanos(System.nanoTime() - startedAt).compareTo(lockLease.dividedBy(2)) < 0);
+
+            if (checked > 0) {
+                log.info("Проверка оплаты в 1С: проверено документов {}, оплачено {}, за {} мс",
+                        checked, paid, Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+            }
+        } catch (Exception e) {
+            runStatus = "FAILED";
+            log.error("Ошибка при фоновой проверке оплаты", e);
+        } finally {
+            clusterLockService.unlock(PAYMENT_POLL_LOCK, Duration.ofNanos(System.nanoTime() - startedAt), runStatus);
+        }
+    }
+
+    /**
+     * Проверяет страницу заявок параллельно и сохраняет результаты пакетными UPDATE
+     *
+     * @return количество заявок, переведенных в статус "paid"
+     */
+    private int processPage(List<Request> page, LocalDateTime now) {
+        // null - оплата не проверялась (1С недоступна), такие заявки будут проверены в следующий запуск
+        Map<Request, CompletableFuture<Boolean>> checks = new LinkedHashMap<>();
+        for (Request request : page) {
+            checks.put(request, CompletableFuture.supplyAsync(() -> isPaid(request), paymentPollExecutor));
+        }
+
+        List<Integer> paidIds = new ArrayList<>();
+        // Неоплаченные заявки группируются по времени следующей проверки (с точностью до минуты)
+        Map<LocalDateTime, List<Integer>> nextCheckGroups = new TreeMap<>();
+        for (Map.Entry<Request, CompletableFuture<Boolean>> check : checks.entrySet()) {
+            Request request = check.getKey();
+            Boolean paid = check.getValue().join();
+            if (paid == null) {
+                continue;
+            }
+            if (paid) {
+                paidIds.add(request.getId());
+            } else {
+                LocalDateTime nextCheckAt = now.plus(nextInterval(request, now)).truncatedTo(ChronoUnit.MINUTES);
+                nextCheckGroups.computeIfAbsent(nextCheckAt, k -> new ArrayList<>()).add(request.getId());
+            }
+        }
+
+        Integer updated = transactionTemplate.execute(status -> {
+            int count = paidIds.isEmpty() ? 0 : requestRepository.markPaid(paidIds, LocalDateTime.now());
+            nextCheckGroups.forEach((nextCheckAt, ids) -> requestRepository.scheduleNextPaymentCheck(ids, nextCheckAt));
+            return count;
+        });
+        return updated != null ? updated : 0;
+    }
+
+    private Boolean isPaid(Request request) {
+        try {
+            PaymentStatusResponse response = paymentStatusCache.getPaymentStatus(request.getDocument1cId());
+            return response != null && Boolean.TRUE.equals(response.getIsPaid());
+        } catch (OneCUnavailableException e) {
+            return null;
+        } catch (Exception e) {
+            // Ошибка 1С не должна останавливать проверку остальных документов: повторим по расписанию
+            log.warn("Не удалось проверить оплату документа {} (заявка {}): {}",
+                    request.getDocument1cId(), request.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Интервал до следующей проверки: возраст документа / ageDivisor в пределах [minInterval, maxInterval]
+     */
+    private Duration nextInterval(Request request, LocalDateTime now) {
+        LocalDateTime completedAt = request.getCompletedAt() != null ? request.getCompletedAt() : request.getUpdatedAt();
+        Duration age = completedAt != null ? Duration.between(completedAt, now) : Duration.ZERO;
+        Duration interval = age.dividedBy(Math.max(ageDivisor, 1));
+        if (interval.compareTo(minInterval) < 0) {
+            return minInterval;
+        }
+        return interval.compareTo(maxInterval) > 0 ? maxInterval : interval;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.flish1.entity.EquipmentType;
+import ru.flish1.entity.PartType;
+import ru.flish1.entity.User;
+import ru.flish1.entity.UserRole;
+import ru.flish1.repository.EquipmentTypeRepository;
+import ru.flish1.repository.PartTypeRepository;
+import ru.flish1.repository.UserRepository;
+import ru.flish1.repository.UserRoleRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Справочные данные форм: типы оборудования, тип запчастей "material", роли и инженеры
+ * Данные меняются редко, поэтому хранятся в кэше (Caffeine, spring.cache.*) и не запрашиваются из БД
+ * при каждом показе страницы. Кэш сбрасывается явно там, где справочники меняются: DataInitializer,
+ * UserService.createUser (после коммита) и синхронизация номенклатуры. Статистика попаданий - метрики cache.gets
+ * Возвращаемые сущности отсоединены от сессии и общие для всех потоков: их нельзя изменять
+ */
+@Service
+public class ReferenceDataService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenceDataService.class);
+
+    public static final String EQUIPMENT_TYPES = "equipmentTypes";
+    public static final String PART_TYPES = "partTypes";
+    public static final String ROLES = "roles";
+    public static final String ENGINEERS = "engineers";
+
+    private final EquipmentTypeRepository equipmentTypeRepository;
+    private final PartTypeRepository partTypeRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+
+    public ReferenceDataService(EquipmentTypeRepository equipmentTypeRepository, PartTypeRepository partTypeRepository,
+                                UserRoleRepository userRoleRepository, UserRepository userRepository,
+                                CacheManager cacheManager) {
+        this.equipmentTypeRepository = equipmentTypeRepository;
+        this.partTypeRepository = partTypeRepository;
+        this.userRoleRepository = userRoleRepository;
+        this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
+    }
+
+    @Cacheable(EQUIPMENT_TYPES)
+    @Transactional(readOnly = true)
+    public List<EquipmentType> getEquipmentTypes() {
+        return equipmentTypeRepository.findAll();
+    }
+
+    /**
+     * Тип запчастей (материалов), к которому синхронизация относит запчасти из 1C
+     * Пока тип не создан, результат не кэшируется
+     */
+    @Cacheable(cacheNames = PART_TYPES, key = "'material'", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public PartType getMaterialPartType() {
+        return partTypeRepository.findAll().stream()
+                .filter(t -> "material".equalsIgnoreCase(t.getName()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Cacheable(cacheNames = ROLES, unless = "#result == null")
+    @Transactional(readOnly = true)
+    public Optional<UserRole> findRole(String name) {
+        return userRoleRepository.findByName(name);
+    }
+
+    /**
+     * Инженеры для выбора исполнителя заявки (роль загружена вместе с пользователем)
+     */
+    @Cacheable(ENGINEERS)
+    @Transactional(readOnly = true)
+    public List<User> getEngineers() {
+        return userRepository.findByRoleName("ENGINEER");
+    }
+
+    /**
+     * Сбрасывает кэш инженеров после коммита текущей транзакции (или сразу, если транзакции нет)
+     * Сброс до коммита не помогает: параллельное чтение успело бы снова закэшировать старый список
+     */
+    public void evictEngineersAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictEngineers();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictEngineers();
+            }
+        });
+    }
+
+    private void evictEngineers() {
+        Cache cache = cacheManager.getCache(ENGINEERS);
+        if (cache != null) {
+            cache.clear();
+        }
+        log.debug("Кэш инженеров сброшен");
+    }
+
+    @CacheEvict(cacheNames = PART_TYPES, allEntries = true)
+    public void evictPartTypes() {
+        log.debug("Кэш типов запчастей сброшен");
+    }
+
+    @CacheEvict(cacheNames = {EQUIPMENT_TYPES, PART_TYPES, ROLES, ENGINEERS}, allEntries = true)
+    public void evictAll() {
+        log.info("Кэш справочных данных сброшен");
+    }
+}
@@ -0,0 +1,306 @@
+package ru.flish1.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.flish1.dto.RequestListItem;
+import ru.flish1.entity.Request;
+import ru.flish1.repository.RequestRepository;
+import ru.flish1.repository.RequestSpecifications;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Полнотекстовый поиск заявок по описанию проблемы и адресу
+ * Используется встроенный индекс Lucene (integration.search.index-path). Индекс обновляется в фоне:
+ * изменившиеся заявки (по updated_at) выбираются пачками и записываются одним коммитом индекса,
+ * поэтому создание и изменение заявок в RequestService не ждут индексации. Позиция последней
+ * проиндексированной заявки хранится в самом индексе, после перезапуска индексация продолжается с нее
+ */
+@Service
+public class RequestSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestSearchService.class);
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_PROBLEM = "problemDescription";
+    private static final String FIELD_ADDRESS = "address";
+    private static final String COMMIT_UPDATED_AT = "updatedAt";
+    private static final String COMMIT_ID = "id";
+
+    private final RequestRepository requestRepository;
+    private final Analyzer analyzer = new RussianAnalyzer();
+
+    @Value("${integration.search.index-path:./data/search-index}")
+    private String indexPath;
+
+    @Value("${integration.search.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * Заявки, измененные позже now - lag, откладываются до следующего запуска: к этому времени
+     * транзакции, изменившие их, успевают завершиться, и изменение не будет пропущено
+     */
+    @Value("${integration.search.lag:PT5S}")
+    private Duration lag;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    /**
+     * Позиция (updated_at, id) последней проиндексированной заявки
+     */
+    private LocalDateTime indexedUpdatedAt = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private Integer indexedId = 0;
+
+    public RequestSearchService(RequestRepository requestRepository) {
+        this.requestRepository = requestRepository;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = FSDirectory.open(Path.of(indexPath));
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+
+        if (writer.getLiveCommitData() != null) {
+            for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+                if (COMMIT_UPDATED_AT.equals(entry.getKey())) {
+                    indexedUpdatedAt = LocalDateTime.parse(entry.getValue());
+                } else if (COMMIT_ID.equals(entry.getKey())) {
+                    indexedId = Integer.parseInt(entry.getValue());
+                }
+            }
+        }
+        log.info("Полнотекстовый индекс заявок открыт: {}, документов: {}, проиндексировано до {} (ID={})",
+                indexPath, writer.getDocStats().numDocs, indexedUpdatedAt, indexedId);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * Переносит в индекс заявки, измененные с прошлого запуска, пачками по batchSize
+     */
+    @Scheduled(fixedDelayString = "${integration.search.fixed-delay:PT2S}",
+            initialDelayString = "${integration.search.initial-delay:PT5S}")
+    public void indexChanges() {
+        try {
+            int indexed = 0;
+            List<Request> batch;
+            do {
+                batch = requestRepository.findUpdatedAfter(indexedUpdatedAt, indexedId,
+                        LocalDateTime.now().minus(lag), PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                indexBatch(batch);
+                indexed += batch.size();
+            } while (batch.size() == batchSize);
+
+            if (indexed > 0) {
+                searcherManager.maybeRefresh();
+                log.info("Полнотекстовый индекс заявок обновлен, заявок: {}", indexed);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при обновлении полнотекстового индекса заявок", e);
+        }
+    }
+
+    private void indexBatch(List<Request> batch) throws IOException {
+        for (Request request : batch) {
+            writer.updateDocument(new Term(FIELD_ID, String.valueOf(request.getId())), toDocument(request));
+        }
+
+        Request last = batch.get(batch.size() - 1);
+        writer.setLiveCommitData(Map.of(
+                COMMIT_UPDATED_AT, last.getUpdatedAt().toString(),
+                COMMIT_ID, String.valueOf(last.getId())).entrySet());
+        writer.commit();
+
+        indexedUpdatedAt = last.getUpdatedAt();
+        indexedId = last.getId();
+    }
+
+    private Document toDocument(Request request) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, String.valueOf(request.getId()), Field.Store.YES));
+        if (request.getProblemDescription() != null) {
+            document.add(new TextField(FIELD_PROBLEM, request.getProblemDescription(), Field.Store.NO));
+        }
+        if (request.getAddress() != null) {
+            document.add(new TextField(FIELD_ADDRESS, request.getAddress(), Field.Store.NO));
+        }
+        return document;
+    }
+
+    /**
+     * Ищет заявки, в описании проблемы или адресе которых встречаются все слова запроса
+     * (с учетом словоформ); результаты упорядочены по релевантности
+     *
+     * @param text строка поиска
+     * @param page номер страницы (с 0); номер больше последней страницы заменяется последней
+     * @param size размер страницы
+     */
+    public SearchPage search(String text, int page, int size) {
+        if (text == null || text.isBlank()) {
+            return new SearchPage(new ArrayList<>(), 0, page, size);
+        }
+
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(new String[]{FIELD_PROBLEM, FIELD_ADDRESS}, analyzer);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        Query query;
+        try {
+            query = parser.parse(QueryParser.escape(text.trim()));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Некорректный поисковый запрос: " + text, e);
+        }
+        if (query == null) {
+            // Запрос состоит только из стоп-слов
+            return new SearchPage(new ArrayList<>(), 0, page, size);
+        }
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int total = searcher.count(query);
+                if (total == 0) {
+                    return new SearchPage(new ArrayList<>(), 0, 0, size);
+                }
+                // Номер страницы за пределами результатов сводится к последней странице:
+                // глубина выборки не превышает количество найденных заявок и не переполняет int
+                int pageSize = Math.max(1, size);
+                int currentPage = Math.min(Math.max(page, 0), (total - 1) / pageSize);
+                int offset = currentPage * pageSize;
+                TopDocs topDocs = searcher.search(query, (int) Math.min((long) offset + pageSize, total));
+
+                List<Integer> ids = new ArrayList<>();
+                Map<Integer, Float> scores = new HashMap<>();
+                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                for (int i = offset; i < scoreDocs.length; i++) {
+                    Integer id = Integer.valueOf(searcher.storedFields().document(scoreDocs[i].doc).get(FIELD_ID));
+                    ids.add(id);
+                    scores.put(id, scoreDocs[i].score);
+                }
+
+                // Строки результатов выбираются проекцией списка заявок, сущности не загружаются
+                Map<Integer, RequestListItem> itemsById = new HashMap<>();
+                if (!ids.isEmpty()) {
+                    for (RequestListItem item : requestRepository.findListItems(RequestSpecifications.idIn(ids),
+                            Sort.unsorted(), ids.size())) {
+                        itemsById.put(item.getId(), item);
+                    }
+                }
+
+                List<SearchHit> hits = new ArrayList<>();
+                for (Integer id : ids) {
+                    RequestListItem item = itemsById.get(id);
+                    if (item != null) {
+                        hits.add(new SearchHit(item, scores.get(id)));
+                    }
+                }
+                return new SearchPage(hits, total, currentPage, pageSize);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка полнотекстового поиска: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Найденная заявка с оценкой релевантности
+     */
+    public static class SearchHit {
+        private final RequestListItem request;
+        private final float score;
+
+        public SearchHit(RequestListItem request, float score) {
+            this.request = request;
+            this.score = score;
+        }
+
+        public RequestListItem getRequest() {
+            return request;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Страница результатов поиска
+     */
+    public static class SearchPage {
+        private final List<SearchHit> hits;
+        private final int total;
+        private final int page;
+        private final int size;
+
+        public SearchPage(List<SearchHit> hits, int total, int page, int size) {
+            this.hits = hits;
+            this.total = total;
+            this.page = page;
+            this.size = size;
+        }
+
+        public List<SearchHit> getHits() {
+            return hits;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public boolean isHasPrev() {
+            return page > 0;
+        }
+
+        public boolean isHasNext() {
+            return (long) (page + 1) * size < total;
+        }
+    }
+}
@@ -2,15 +2,23 @@ package ru.flish1.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.flish1.dto.RequestFilter;
+import ru.flish1.dto.RequestListItem;
 import ru.flish1.entity.EquipmentType;
 import ru.flish1.entity.Request;
 import ru.flish1.entity.User;
 import ru.flish1.repository.EquipmentTypeRepository;
 import ru.flish1.repository.RequestRepository;
+import ru.flish1.repository.RequestSpecifications;
 import ru.flish1.repository.UserRepository;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +28,9 @@ import java.util.Optional;
 @Service
 public class RequestService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private static final Logger log = LoggerFactory.getLogger(RequestService.class);
 
     private final RequestRepository requestRepository;
@@ -34,10 +45,50 @@ public class RequestService {
     }
 
     /**
-     * Получает все заявки, отсортированные по дате создания (новые сначала)
+     * Получает страницу заявок, отсортированных по дате создания (новые сначала)
+     * Страницы выбираются по ключу (created_at, id) от курсора, а не через OFFSET,
+     * поэтому любая страница стоит столько же, сколько первая. Выбираются только поля строки списка
+     * (проекция RequestListItem), сущности заявок в сессию не загружаются
+     *
+     * @param filter фильтр по статусу, инженеру, типу оборудования, клиенту и периоду создания
+     * @param after  курсор следующей страницы: заявки старше указанной
+     * @param before курсор предыдущей страницы: заявки новее указанной (имеет приоритет над after)
+     * @param size   размер страницы (не больше MAX_PAGE_SIZE)
      */
-    public List<Request> getAllRequests() {
-        return requestRepository.findAllWithEngineerOrderByCreatedAtDesc();
+    @Transactional(readOnly = true)
+    public RequestPage getRequestPage(RequestFilter filter, String after, String before, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        Specification<Request> spec = RequestSpecifications.matching(filter);
+
+        PageCursor beforeCursor = PageCursor.parse(before);
+        PageCursor afterCursor = beforeCursor == null ? PageCursor.parse(after) : null;
+        boolean backward = beforeCursor != null;
+        Sort sort;
+        if (backward) {
+            // Предыдущая страница выбирается в обратном порядке и разворачивается
+            spec = spec.and(RequestSpecifications.newerThan(beforeCursor.createdAt, beforeCursor.id));
+            sort = Sort.by(Sort.Direction.ASC, "createdAt", "id");
+        } else {
+            if (afterCursor != null) {
+                spec = spec.and(RequestSpecifications.olderThan(afterCursor.createdAt, afterCursor.id));
+            }
+            sort = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+        }
+
+        // Выбираем на одну заявку больше, чтобы узнать, есть ли следующая страница в этом направлении
+        List<RequestListItem> rows = requestRepository.findListItems(spec, sort, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<RequestListItem> items = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+        if (backward) {
+            Collections.reverse(items);
+        }
+
+        boolean hasPrev = backward ? hasMore : afterCursor != null;
+        boolean hasNext = backward || hasMore;
+        String prevCursor = hasPrev && !items.isEmpty() ? PageCursor.of(items.get(0)) : null;
+        String nextCursor = hasNext && !items.isEmpty() ? PageCursor.of(items.get(items.size() - 1)) : null;
+        return new RequestPage(items, prevCursor, nextCursor);
     }
 
     /**
@@ -187,20 +238,6 @@ public class RequestService {
         return saved;
     }
 
-    /**
-     * Получает заявки по статусу
-     */
-    public List<Request> getRequestsByStatus(String status) {
-        return requestRepository.findByStatusOrderByCreatedAtDesc(status);
-    }
-
-    /**
-     * Получает заявки инженера
-     */
-    public List<Request> getRequestsByEngineer(Integer engineerId) {
-        return requestRepository.findByEngineerIdOrderByCreatedAtDesc(engineerId);
-    }
-
     /**
      * Переводит заявку в статус "assigned" (назначена)
      */
@@ -281,6 +318,7 @@ public class RequestService {
         request.setStatus("completed");
         request.setPaymentMethod(paymentMethod);
         request.setDocument1cId(document1cId);
+        request.setCompletedAt(LocalDateTime.now());
 
         Request saved = requestRepository.save(request);
         log.info("Заявка завершена: ID={}, способ оплаты={}, документ 1С={}",
@@ -288,6 +326,41 @@ public class RequestService {
         return saved;
     }
 
+    /**
+     * Сохраняет ID документа 1С, созданного по заказу заявки
+     */
+    @Transactional
+    public Request attachDocument1cId(Integer requestId, String document1cId) {
+        Request request = requestRepository.findById(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Заявка не найдена: " + requestId));
+
+        request.setDocument1cId(document1cId);
+
+        Request saved = requestRepository.save(request);
+        log.info("Заявке ID={} присвоен документ 1С: {}", saved.getId(), document1cId);
+        return saved;
+    }
+
+    /**
+     * Сохраняет ID документа 1С, если заявке еще не присвоен документ
+     * Используется при ручном создании заказа, чтобы не перезаписать документ, отправленный через order_outbox
+     */
+    @Transactional
+    public void attachDocument1cIdIfAbsent(Integer requestId, String document1cId) {
+        Request request = requestRepository.findById(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Заявка не найдена: " + requestId));
+
+        if (request.getDocument1cId() != null) {
+            log.info("Заявке ID={} уже присвоен документ 1С {}, новый документ {} не сохранен",
+                    requestId, request.getDocument1cId(), document1cId);
+            return;
+        }
+
+        request.setDocument1cId(document1cId);
+        requestRepository.save(request);
+        log.info("Заявке ID={} присвоен документ 1С: {}", requestId, document1cId);
+    }
+
     /**
      * Переводит заявку в статус "paid" (оплачена)
      */
@@ -307,6 +380,41 @@ public class RequestService {
         return saved;
     }
 
+    /**
+     * Фиксирует подтверждение наличной оплаты инженером и переводит заявку в статус "paid"
+     *
+     * @param sentTo1c подтверждение уже принято 1С; иначе оно будет отправлено OrderOutboxDispatcher,
+     *                 когда у заявки появится документ 1С
+     */
+    @Transactional
+    public Request confirmCashPayment(Integer requestId, boolean sentTo1c) {
+        Request request = requestRepository.findById(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Заявка не найдена: " + requestId));
+
+        if (!"completed".equals(request.getStatus())) {
+            throw new IllegalArgumentException("Заявка должна быть в статусе 'completed' для подтверждения оплаты");
+        }
+
+        request.setStatus("paid");
+        request.setCashConfirmationPending(sentTo1c ? null : Boolean.TRUE);
+
+        Request saved = requestRepository.save(request);
+        log.info("Наличная оплата заявки ID={} подтверждена, отправлена в 1С: {}", saved.getId(), sentTo1c);
+        return saved;
+    }
+
+    /**
+     * Снимает отметку о неотправленном подтверждении наличной оплаты
+     */
+    @Transactional
+    public void clearCashConfirmationPending(Integer requestId) {
+        Request request = requestRepository.findById(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Заявка не найдена: " + requestId));
+
+        request.setCashConfirmationPending(null);
+        requestRepository.save(request);
+    }
+
     /**
      * Отменяет заявку
      */
@@ -325,4 +433,70 @@ public class RequestService {
         log.info("Заявка отменена: ID={}", saved.getId());
         return saved;
     }
+
+    /**
+     * Страница списка заявок с курсорами соседних страниц
+     */
+    public static class RequestPage {
+        private final List<RequestListItem> items;
+        private final String prevCursor;
+        private final String nextCursor;
+
+        public RequestPage(List<RequestListItem> items, String prevCursor, String nextCursor) {
+            this.items = items;
+            this.prevCursor = prevCursor;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<RequestListItem> getItems() {
+            return items;
+        }
+
+        /**
+         * Курсор для перехода на предыдущую страницу (null - это первая страница)
+         */
+        public String getPrevCursor() {
+            return prevCursor;
+        }
+
+        /**
+         * Курсор для перехода на следующую страницу (null - это последняя страница)
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Позиция заявки в порядке (created_at, id); в URL передается как "created_at_id"
+     */
+    private static class PageCursor {
+        private final LocalDateTime createdAt;
+        private final Integer id;
+
+        private PageCursor(LocalDateTime createdAt, Integer id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        static String of(RequestListItem item) {
+            return item.getCreatedAt() + "_" + item.getId();
+        }
+
+        /**
+         * Разбирает курсор; пустой или некорректный курсор означает первую страницу
+         */
+        static PageCursor parse(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            int separator = cursor.lastIndexOf('_');
+            try {
+                return new PageCursor(LocalDateTime.parse(cursor.substring(0, separator)),
+                        Integer.parseInt(cursor.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
 }
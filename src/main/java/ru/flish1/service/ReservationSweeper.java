@@ -0,0 +1,123 @@
+package ru.flish1.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.ReservePartRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Фоновое снятие зависших резервов запчастей
+ * Активные резервы отмененных заявок и резервы заявок, работа по которым не начата (new, assigned),
+ * старше integration.reservation-sweep.ttl закрываются пачками: в одной транзакции пачка закрывается
+ * одним UPDATE, а зарезервированное количество возвращается на склад по каждой запчасти.
+ * Число снятых за запуск резервов публикуется в метрике parts.reservations.swept
+ */
+@Component
+public class ReservationSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationSweeper.class);
+
+    static final String RESERVATION_SWEEP_LOCK = "reservation-sweep";
+
+    private final ReservePartRepository reservePartRepository;
+    private final PartRepository partRepository;
+    private final ClusterLockService clusterLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final DistributionSummary sweptPerRun;
+
+    @Value("${integration.reservation-sweep.ttl:P7D}")
+    private Duration ttl;
+
+    @Value("${integration.reservation-sweep.batch-size:500}")
+    private int batchSize;
+
+    @Value("${integration.reservation-sweep.lock.lease:PT10M}")
+    private Duration lockLease;
+
+    public ReservationSweeper(ReservePartRepository reservePartRepository, PartRepository partRepository,
+                              ClusterLockService clusterLockService, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry, CatalogSnapshotService catalogSnapshotService) {
+        this.reservePartRepository = reservePartRepository;
+        this.partRepository = partRepository;
+        this.clusterLockService = clusterLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.sweptPerRun = DistributionSummary.builder("parts.reservations.swept")
+                .description("Количество резервов запчастей, снятых за один запуск")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${integration.reservation-sweep.fixed-delay:PT10M}",
+            initialDelayString = "${integration.reservation-sweep.initial-delay:PT1M}")
+    public void sweep() {
+        if (!clusterLockService.tryLock(RESERVATION_SWEEP_LOCK, lockLease)) {
+            log.debug("Снятие резервов пропущено: блокировка удерживается другим узлом");
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        String runStatus = "COMPLETED";
+        int swept = 0;
+        try {
+            LocalDateTime expiredBefore = LocalDateTime.now().minus(ttl);
+            int closed;
+            do {
+                closed = sweepBatch(expiredBefore);
+                swept += closed;
+            } while (closed == batchSize
+                    && Duration.ofNanos(System.nanoTime() - startedAt).compareTo(lockLease.dividedBy(2)) < 0);
+
+            if (swept > 0) {
+                log.info("Снято зависших резервов запчастей: {}, за {} мс",
+                        swept, Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+            }
+        } catch (Exception e) {
+            runStatus = "FAILED";
+            log.error("Ошибка при снятии зависших резервов запчастей", e);
+        } finally {
+            sweptPerRun.record(swept);
+            clusterLockService.unlock(RESERVATION_SWEEP_LOCK, Duration.ofNanos(System.nanoTime() - startedAt), runStatus);
+        }
+    }
+
+    /**
+     * Закрывает одну пачку резервов и возвращает их количество на склад в одной транзакции
+     * Сначала резервы закрываются условным UPDATE (только активные строки, UPDATE их блокирует), затем
+     * суммируются закрытые строки пачки. PartReservationService.release удаляет резерв тоже только в статусе
+     * active, поэтому из двух параллельных снятий одного резерва количество на склад возвращает только одно
+     *
+     * @return количество закрытых резервов
+     */
+    private int sweepBatch(LocalDateTime expiredBefore) {
+        Integer closed = transactionTemplate.execute(status -> {
+            List<Long> ids = reservePartRepository.findSweepableIds(expiredBefore, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                return 0;
+            }
+
+            int count = reservePartRepository.closeActive(ids);
+            List<Integer> partIds = new ArrayList<>();
+            for (Object[] row : reservePartRepository.sumQuantityByPart(ids, "closed")) {
+                partRepository.releaseStock((Integer) row[0], ((Number) row[1]).intValue());
+                partIds.add((Integer) row[0]);
+            }
+            catalogSnapshotService.refreshStockAfterCommit(partIds);
+            return count;
+        });
+        return closed != null ? closed : 0;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.flish1.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновое задание синхронизации номенклатуры из 1C
+ * Хранит статус, текущий этап и счетчики прогресса, которые читаются со страницы номенклатуры
+ */
+public class SyncJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED, SKIPPED
+    }
+
+    private final String id;
+    private final String trigger;
+    private final LocalDateTime createdAt;
+    private final AtomicInteger processed = new AtomicInteger();
+
+    private volatile Status status = Status.RUNNING;
+    private volatile String phase = "В очереди";
+    private volatile Integer total;
+    private volatile String message;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile Runnable checkpointListener;
+
+    public SyncJob(String id, String trigger) {
+        this.id = id;
+        this.trigger = trigger;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    void markStarted() {
+        startedAt = LocalDateTime.now();
+    }
+
+    void markCompleted(String message) {
+        this.message = message;
+        this.phase = "Завершено";
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.COMPLETED;
+    }
+
+    void markFailed(String message) {
+        this.message = message;
+        this.phase = "Ошибка";
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.FAILED;
+    }
+
+    void markSkipped(String message) {
+        this.message = message;
+        this.phase = "Пропущено";
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.SKIPPED;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public void setTotal(Integer total) {
+        this.total = total;
+    }
+
+    public void addProcessed(int count) {
+        processed.addAndGet(count);
+    }
+
+    void setCheckpointListener(Runnable checkpointListener) {
+        this.checkpointListener = checkpointListener;
+    }
+
+    /**
+     * Вызывается в транзакции очередной пачки перед ее коммитом
+     * Исключение слушателя откатывает пачку вместе с контрольной точкой
+     */
+    public void beforeCheckpointCommit() {
+        Runnable listener = checkpointListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTrigger() {
+        return trigger;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public int getProcessed() {
+        return processed.get();
+    }
+
+    public Integer getTotal() {
+        return total;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.flish1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Сервис запуска синхронизации номенклатуры в фоне
+ * Синхронизация выполняется на отдельном пуле потоков, одновременно может выполняться только одно задание
+ * Перед запуском захватывается блокировка в БД, поэтому при нескольких экземплярах приложения
+ * синхронизацию выполняет только один узел
+ */
+@Service
+public class SyncJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncJobService.class);
+
+    /**
+     * Сколько последних заданий хранить для просмотра статуса
+     */
+    private static final int JOB_HISTORY_SIZE = 20;
+
+    public static final String NOMENCLATURE_SYNC_LOCK = "nomenclature-sync";
+
+    private final SyncService syncService;
+    private final ClusterLockService clusterLockService;
+    private final TaskExecutor syncExecutor;
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    /**
+     * Время аренды блокировки синхронизации; аренда продлевается в транзакции каждой пачки,
+     * поэтому это предельная пауза между пачками, а не предельная длительность синхронизации
+     */
+    @Value("${integration.sync.lock.lease:PT30M}")
+    private Duration lockLease;
+
+    private final Map<String, SyncJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SyncJob> eldest) {
+            return size() > JOB_HISTORY_SIZE;
+        }
+    };
+
+    private SyncJob currentJob;
+
+    public SyncJobService(SyncService syncService, ClusterLockService clusterLockService,
+                          @Qualifier("syncExecutor") TaskExecutor syncExecutor,
+                          CatalogSnapshotService catalogSnapshotService) {
+        this.syncService = syncService;
+        this.clusterLockService = clusterLockService;
+        this.syncExecutor = syncExecutor;
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    /**
+     * Запускает синхронизацию номенклатуры в фоне
+     *
+     * @param trigger кто запустил синхронизацию (логин пользователя или планировщик)
+     * @return созданное задание
+     * @throws IllegalStateException если синхронизация уже выполняется
+     */
+    public synchronized SyncJob startNomenclatureSync(String trigger) {
+        if (currentJob != null && currentJob.isRunning()) {
+            throw new IllegalStateException("Синхронизация уже выполняется (задание " + currentJob.getId() + ")");
+        }
+
+        SyncJob job = new SyncJob(UUID.randomUUID().toString(), trigger);
+        jobs.put(job.getId(), job);
+        currentJob = job;
+
+        try {
+            syncExecutor.execute(() -> runJob(job));
+        } catch (RuntimeException e) {
+            job.markFailed("Не удалось запустить синхронизацию: " + e.getMessage());
+            throw e;
+        }
+        log.info("Запущено задание синхронизации номенклатуры: {} ({})", job.getId(), trigger);
+        return job;
+    }
+
+    private void runJob(SyncJob job) {
+        job.markStarted();
+        job.setPhase("Ожидание блокировки");
+        if (!clusterLockService.tryLock(NOMENCLATURE_SYNC_LOCK, lockLease)) {
+            job.markSkipped("Синхронизация уже выполняется на другом узле");
+            log.info("Задание синхронизации {} пропущено: блокировка удерживается другим узлом", job.getId());
+            return;
+        }
+
+        job.setCheckpointListener(() -> {
+            if (!clusterLockService.extendLock(NOMENCLATURE_SYNC_LOCK, lockLease)) {
+                // Блокировку мог захватить другой узел: пачка откатывается, синхронизация параллельно с ним
+                // не продолжается
+                throw new IllegalStateException("Аренда блокировки синхронизации истекла, синхронизация прервана");
+            }
+        });
+
+        long startedAt = System.nanoTime();
+        SyncJob.Status outcome = SyncJob.Status.FAILED;
+        String message = null;
+        try {
+            message = syncService.syncNomenclature(job);
+            catalogSnapshotService.rebuildIfChanged();
+            outcome = SyncJob.Status.COMPLETED;
+            log.info("Задание синхронизации {} завершено: {}", job.getId(), message);
+        } catch (Exception e) {
+            log.error("Задание синхронизации {} завершилось с ошибкой", job.getId(), e);
+            message = e.getMessage();
+            // Пачки, сохраненные до ошибки, тоже должны попасть в снимок каталога
+            catalogSnapshotService.rebuildIfChanged();
+        } finally {
+            try {
+                clusterLockService.unlock(NOMENCLATURE_SYNC_LOCK, Duration.ofNanos(System.nanoTime() - startedAt),
+                        outcome.name());
+            } finally {
+                // Итоговый статус выставляется после освобождения блокировки: клиент, увидевший завершение,
+                // может сразу запустить следующее задание
+                if (outcome == SyncJob.Status.COMPLETED) {
+                    job.markCompleted(message);
+                } else {
+                    job.markFailed(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Получает задание по ID
+     */
+    public synchronized Optional<SyncJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Получает последнее запущенное задание (выполняющееся или завершенное)
+     */
+    public synchronized Optional<SyncJob> getLastJob() {
+        return Optional.ofNullable(currentJob);
+    }
+}
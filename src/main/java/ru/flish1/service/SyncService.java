@@ -1,19 +1,37 @@
 package ru.flish1.service;
 
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.flish1.client.OneCApiClient;
 import ru.flish1.dto.NomenclatureDto;
 import ru.flish1.entity.Part;
 import ru.flish1.entity.PartType;
+import ru.flish1.entity.ServiceEntity;
+import ru.flish1.entity.SyncState;
 import ru.flish1.repository.CustomerRepository;
 import ru.flish1.repository.PartRepository;
 import ru.flish1.repository.PartTypeRepository;
 import ru.flish1.repository.ServiceRepository;
+import ru.flish1.repository.SyncStateRepository;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Сервис для синхронизации данных с 1C
@@ -23,99 +41,356 @@ public class SyncService {
 
     private static final Logger log = LoggerFactory.getLogger(SyncService.class);
 
+    private static final String NOMENCLATURE_SYNC = "nomenclature";
+
     private final OneCApiClient oneCApiClient;
     private final PartRepository partRepository;
     private final PartTypeRepository partTypeRepository;
     private final CustomerRepository customerRepository;
     private final ServiceRepository serviceRepository;
+    private final SyncStateRepository syncStateRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceDataService referenceDataService;
+
+    /**
+     * Размер пачки при сохранении через saveAll
+     */
+    @Value("${integration.sync.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Количество элементов номенклатуры, обрабатываемых за один проход и сохраняемых в одной транзакции
+     */
+    @Value("${integration.sync.chunk-size:500}")
+    private int chunkSize;
 
     public SyncService(OneCApiClient oneCApiClient, PartRepository partRepository,
                        PartTypeRepository partTypeRepository, CustomerRepository customerRepository,
-                       ServiceRepository serviceRepository) {
+                       ServiceRepository serviceRepository, SyncStateRepository syncStateRepository,
+                       EntityManager entityManager, PlatformTransactionManager transactionManager,
+                       ReferenceDataService referenceDataService) {
         this.oneCApiClient = oneCApiClient;
         this.partRepository = partRepository;
         this.partTypeRepository = partTypeRepository;
         this.customerRepository = customerRepository;
         this.serviceRepository = serviceRepository;
+        this.syncStateRepository = syncStateRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.referenceDataService = referenceDataService;
     }
 
     /**
      * Синхронизирует номенклатуру из 1C в локальную БД
      * Услуги сохраняются в таблицу services, запчасти (материалы) - в таблицу parts
+     * Ответ 1C читается потоково и обрабатывается пачками: для каждой пачки существующие записи
+     * загружаются одним запросом по nomenclatureId и sku, изменения сохраняются через saveAll
+     * Синхронизация инкрементальная: запрос к 1C отправляется с ETag прошлой загрузки,
+     * а записи, хэш содержимого которых не изменился, не перезаписываются
+     * Каждая пачка сохраняется в отдельной транзакции вместе с контрольной точкой, поэтому прерванная
+     * синхронизация того же ответа 1C (с тем же ETag) продолжается с последней сохраненной пачки
+     *
+     * @param job задание синхронизации, в котором отражается текущий этап и прогресс
+     * @return итоговое сообщение о результате синхронизации
      */
-    @Transactional
-    public void syncNomenclature() {
+    public String syncNomenclature(SyncJob job) {
         log.info("Начало синхронизации номенклатуры из 1C");
+        long startedAt = System.nanoTime();
         try {
-            List<NomenclatureDto> nomenclatureList = oneCApiClient.getNomenclature();
-
-            if (nomenclatureList == null || nomenclatureList.isEmpty()) {
-                log.warn("Список номенклатуры из 1C пуст");
-                return;
-            }
-
             // Получаем или создаем тип запчастей (материалов)
-            PartType materialType = partTypeRepository.findAll().stream()
+            Integer materialTypeId = transactionTemplate.execute(status -> partTypeRepository.findAll().stream()
                     .filter(t -> "material".equalsIgnoreCase(t.getName()) || "Материал".equalsIgnoreCase(t.getName()))
                     .findFirst()
                     .orElseGet(() -> {
                         PartType type = new PartType();
                         type.setName("material");
                         return partTypeRepository.save(type);
+                    })
+                    .getId());
+            // Тип материалов мог быть создан только что: формы должны увидеть его без ожидания истечения кэша
+            referenceDataService.evictPartTypes();
+
+            SyncState syncState = syncStateRepository.findById(NOMENCLATURE_SYNC)
+                    .orElseGet(() -> new SyncState(NOMENCLATURE_SYNC));
+
+            SyncStats stats = new SyncStats();
+            job.setPhase("Загрузка и сохранение номенклатуры");
+            OneCApiClient.NomenclatureStreamResult result = oneCApiClient.streamNomenclature(
+                    syncState.getEtag(), chunkSize, new OneCApiClient.NomenclatureStreamHandler() {
+                        private String responseEtag;
+                        private int skipItems;
+                        private int position;
+
+                        @Override
+                        public void onStart(String etag, Integer totalCount) {
+                            responseEtag = etag;
+                            skipItems = resumePosition(syncState, etag);
+                            if (totalCount != null) {
+                                job.setTotal(totalCount);
+                            }
+                        }
+
+                        @Override
+                        public void onChunk(List<NomenclatureDto> chunk) {
+                            int chunkStart = position;
+                            position += chunk.size();
+                            if (position <= skipItems) {
+                                // Пачка уже сохранена при прерванной синхронизации
+                                stats.resumedItems += chunk.size();
+                                job.addProcessed(chunk.size());
+                                return;
+                            }
+                            List<NomenclatureDto> pending = chunkStart < skipItems
+                                    ? chunk.subList(skipItems - chunkStart, chunk.size())
+                                    : chunk;
+                            stats.resumedItems += chunk.size() - pending.size();
+                            transactionTemplate.executeWithoutResult(status -> {
+                                processChunk(pending, entityManager.getReference(PartType.class, materialTypeId), stats);
+                                saveCheckpoint(responseEtag, position);
+                                // Аренда блокировки проверяется и продлевается до коммита пачки
+                                job.beforeCheckpointCommit();
+                            });
+                            job.addProcessed(chunk.size());
+                        }
                     });
 
-            int servicesProcessed = 0;
-            int partsProcessed = 0;
-
-            // Разделяем услуги и запчасти при парсинге
-            for (NomenclatureDto dto : nomenclatureList) {
-                boolean isService = "service".equalsIgnoreCase(dto.getType());
-
-                if (isService) {
-                    // Сохраняем в таблицу services
-                    ru.flish1.entity.ServiceEntity service = serviceRepository.findAll().stream()
-                            .filter(s -> dto.getId().equals(s.getNomenclatureId()) ||
-                                    (dto.getArticle() != null && dto.getArticle().equals(s.getSku())))
-                            .findFirst()
-                            .orElse(new ru.flish1.entity.ServiceEntity());
-
-                    service.setName(dto.getName());
-                    service.setNomenclatureId(dto.getId());
-                    service.setPrice(dto.getPrice());
-                    service.setUnit(dto.getUnit());
-
-                    serviceRepository.save(service);
-                    servicesProcessed++;
-                } else {
-                    // Сохраняем в таблицу parts (материалы)
-                    Part part = partRepository.findAll().stream()
-                            .filter(p -> dto.getId().equals(p.getNomenclatureId()) ||
-                                    (dto.getArticle() != null && dto.getArticle().equals(p.getSku())))
-                            .findFirst()
-                            .orElse(new Part());
-
-                    part.setName(dto.getName());
-                    part.setSku(dto.getArticle() != null ? dto.getArticle() : dto.getId());
-                    part.setNomenclatureId(dto.getId());
-                    part.setPrice(dto.getPrice());
-                    part.setUnit(dto.getUnit());
-                    part.setType(materialType);
-
-                    // Если quantity не установлен, устанавливаем 0
-                    if (part.getQuantity() == null) {
-                        part.setQuantity(0);
-                    }
-
-                    partRepository.save(part);
-                    partsProcessed++;
-                }
+            if (result.isNotModified()) {
+                syncState.setLastCheckedAt(LocalDateTime.now());
+                syncStateRepository.save(syncState);
+                log.info("Номенклатура в 1C не изменилась с последней синхронизации ({}), обновление не требуется",
+                        syncState.getLastSyncedAt());
+                return "Номенклатура в 1C не изменилась с последней синхронизации";
             }
 
-            log.info("Синхронизация номенклатуры завершена. Обработано услуг: {}, запчастей: {}",
-                    servicesProcessed, partsProcessed);
+            if (result.getCount() == 0) {
+                log.warn("Список номенклатуры из 1C пуст");
+                return "Список номенклатуры из 1C пуст";
+            }
+            job.setTotal(result.getCount());
+
+            // Загрузка завершена: фиксируем ETag и сбрасываем контрольную точку
+            SyncState completedState = syncStateRepository.findById(NOMENCLATURE_SYNC)
+                    .orElseGet(() -> new SyncState(NOMENCLATURE_SYNC));
+            completedState.setEtag(result.getEtag());
+            completedState.setResumeEtag(null);
+            completedState.setCommittedItems(null);
+            completedState.setLastSyncedAt(LocalDateTime.now());
+            completedState.setLastCheckedAt(LocalDateTime.now());
+            syncStateRepository.save(completedState);
+
+            log.info("Синхронизация номенклатуры завершена. Обработано услуг: {}, запчастей: {}, без изменений: {}, " +
+                            "пропущено ранее сохраненных: {}",
+                    stats.servicesProcessed, stats.partsProcessed, stats.unchanged, stats.resumedItems);
+            log.info("Время выполнения этапов синхронизации: всего={} мс, пачек={}, поиск существующих={} мс, " +
+                            "слияние={} мс, сохранение={} мс",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), stats.chunks,
+                    TimeUnit.NANOSECONDS.toMillis(stats.lookupNanos),
+                    TimeUnit.NANOSECONDS.toMillis(stats.mergeNanos),
+                    TimeUnit.NANOSECONDS.toMillis(stats.saveNanos));
+            return String.format("Номенклатура синхронизирована. Обновлено услуг: %d, запчастей: %d, без изменений: %d",
+                    stats.servicesProcessed, stats.partsProcessed, stats.unchanged);
         } catch (Exception e) {
             log.error("Ошибка при синхронизации номенклатуры", e);
             throw new RuntimeException("Не удалось синхронизировать номенклатуру: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Определяет, с какого элемента продолжить загрузку
+     * Продолжение возможно только для того же ответа 1C: ETag должен совпадать с ETag прерванной загрузки
+     */
+    private int resumePosition(SyncState syncState, String responseEtag) {
+        Integer committed = syncState.getCommittedItems();
+        if (responseEtag == null || committed == null || !responseEtag.equals(syncState.getResumeEtag())) {
+            return 0;
+        }
+        log.info("Продолжение прерванной синхронизации номенклатуры с элемента {} (ETag {})", committed, responseEtag);
+        return committed;
+    }
+
+    /**
+     * Сохраняет контрольную точку в транзакции пачки, чтобы она фиксировалась атомарно с данными
+     */
+    private void saveCheckpoint(String responseEtag, int committedItems) {
+        if (responseEtag == null) {
+            return;
+        }
+        SyncState checkpoint = syncStateRepository.findById(NOMENCLATURE_SYNC)
+                .orElseGet(() -> new SyncState(NOMENCLATURE_SYNC));
+        checkpoint.setResumeEtag(responseEtag);
+        checkpoint.setCommittedItems(committedItems);
+        syncStateRepository.save(checkpoint);
+    }
+
+    /**
+     * Обрабатывает одну пачку номенклатуры: поиск существующих записей, слияние и сохранение
+     * После сохранения контекст персистентности очищается, чтобы память не росла с размером каталога
+     */
+    private void processChunk(List<NomenclatureDto> chunk, PartType materialType, SyncStats stats) {
+        long phaseStart = System.nanoTime();
+        Set<String> serviceIds = new HashSet<>();
+        Set<String> serviceSkus = new HashSet<>();
+        Set<String> partIds = new HashSet<>();
+        Set<String> partSkus = new HashSet<>();
+        for (NomenclatureDto dto : chunk) {
+            boolean isService = "service".equalsIgnoreCase(dto.getType());
+            (isService ? serviceIds : partIds).add(dto.getId());
+            if (dto.getArticle() != null) {
+                (isService ? serviceSkus : partSkus).add(dto.getArticle());
+            }
+        }
+
+        // Загружаем существующие записи пачки и строим индексы
+        Map<String, ServiceEntity> servicesByNomenclatureId = new HashMap<>();
+        Map<String, ServiceEntity> servicesBySku = new HashMap<>();
+        if (!serviceIds.isEmpty()) {
+            for (ServiceEntity service : serviceRepository.findByNomenclatureIdIn(serviceIds)) {
+                index(service.getNomenclatureId(), service.getSku(), service, servicesByNomenclatureId, servicesBySku);
+            }
+        }
+        if (!serviceSkus.isEmpty()) {
+            for (ServiceEntity service : serviceRepository.findBySkuIn(serviceSkus)) {
+                index(service.getNomenclatureId(), service.getSku(), service, servicesByNomenclatureId, servicesBySku);
+            }
+        }
+        Map<String, Part> partsByNomenclatureId = new HashMap<>();
+        Map<String, Part> partsBySku = new HashMap<>();
+        if (!partIds.isEmpty()) {
+            for (Part part : partRepository.findByNomenclatureIdIn(partIds)) {
+                index(part.getNomenclatureId(), part.getSku(), part, partsByNomenclatureId, partsBySku);
+            }
+        }
+        if (!partSkus.isEmpty()) {
+            for (Part part : partRepository.findBySkuIn(partSkus)) {
+                index(part.getNomenclatureId(), part.getSku(), part, partsByNomenclatureId, partsBySku);
+            }
+        }
+        stats.lookupNanos += System.nanoTime() - phaseStart;
+
+        // Разделяем услуги и запчасти при парсинге
+        phaseStart = System.nanoTime();
+        List<ServiceEntity> servicesToSave = new ArrayList<>();
+        List<Part> partsToSave = new ArrayList<>();
+        for (NomenclatureDto dto : chunk) {
+            boolean isService = "service".equalsIgnoreCase(dto.getType());
+
+            String contentHash = contentHash(dto);
+
+            if (isService) {
+                ServiceEntity service = lookup(dto, servicesByNomenclatureId, servicesBySku);
+                if (service == null) {
+                    service = new ServiceEntity();
+                } else if (contentHash.equals(service.getContentHash())) {
+                    stats.unchanged++;
+                    continue;
+                }
+
+                service.setName(dto.getName());
+                service.setNomenclatureId(dto.getId());
+                service.setPrice(dto.getPrice());
+                service.setUnit(dto.getUnit());
+                service.setContentHash(contentHash);
+
+                index(service.getNomenclatureId(), service.getSku(), service, servicesByNomenclatureId, servicesBySku);
+                servicesToSave.add(service);
+            } else {
+                Part part = lookup(dto, partsByNomenclatureId, partsBySku);
+                if (part == null) {
+                    part = new Part();
+                    // Остаток существующих запчастей синхронизация не меняет: его списывает резервирование
+                    part.setQuantity(0);
+                } else if (contentHash.equals(part.getContentHash())) {
+                    stats.unchanged++;
+                    continue;
+                }
+
+                part.setName(dto.getName());
+                part.setSku(dto.getArticle() != null ? dto.getArticle() : dto.getId());
+                part.setNomenclatureId(dto.getId());
+                part.setPrice(dto.getPrice());
+                part.setUnit(dto.getUnit());
+                part.setType(materialType);
+                part.setContentHash(contentHash);
+
+                index(part.getNomenclatureId(), part.getSku(), part, partsByNomenclatureId, partsBySku);
+                partsToSave.add(part);
+            }
+        }
+        stats.mergeNanos += System.nanoTime() - phaseStart;
+
+        phaseStart = System.nanoTime();
+        saveInBatches(serviceRepository, servicesToSave);
+        saveInBatches(partRepository, partsToSave);
+        entityManager.clear();
+        stats.saveNanos += System.nanoTime() - phaseStart;
+
+        stats.servicesProcessed += servicesToSave.size();
+        stats.partsProcessed += partsToSave.size();
+        stats.chunks++;
+    }
+
+    /**
+     * Вычисляет хэш содержимого элемента номенклатуры (SHA-256 от значимых полей)
+     */
+    private static String contentHash(NomenclatureDto dto) {
+        String content = String.join("\u001F",
+                String.valueOf(dto.getName()),
+                String.valueOf(dto.getPrice()),
+                String.valueOf(dto.getUnit()),
+                String.valueOf(dto.getArticle()),
+                String.valueOf(dto.getType()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Ищет существующую запись сначала по ID номенклатуры 1C, затем по артикулу
+     */
+    private <T> T lookup(NomenclatureDto dto, Map<String, T> byNomenclatureId, Map<String, T> bySku) {
+        T existing = byNomenclatureId.get(dto.getId());
+        if (existing == null && dto.getArticle() != null) {
+            existing = bySku.get(dto.getArticle());
+        }
+        return existing;
+    }
+
+    private <T> void index(String nomenclatureId, String sku, T entity,
+                           Map<String, T> byNomenclatureId, Map<String, T> bySku) {
+        if (nomenclatureId != null) {
+            byNomenclatureId.putIfAbsent(nomenclatureId, entity);
+        }
+        if (sku != null) {
+            bySku.putIfAbsent(sku, entity);
+        }
+    }
+
+    /**
+     * Сохраняет записи пачками по batchSize с flush после каждой пачки
+     */
+    private <T> void saveInBatches(JpaRepository<T, Integer> repository, List<T> entities) {
+        for (int from = 0; from < entities.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, entities.size());
+            repository.saveAll(entities.subList(from, to));
+            repository.flush();
+        }
+    }
+
+    /**
+     * Счетчики и время этапов одного запуска синхронизации
+     */
+    private static class SyncStats {
+        private int servicesProcessed;
+        private int partsProcessed;
+        private int unchanged;
+        private int resumedItems;
+        private int chunks;
+        private long lookupNanos;
+        private long mergeNanos;
+        private long saveNanos;
+    }
 }
@@ -11,9 +11,7 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.flish1.entity.User;
 import ru.flish1.entity.UserRole;
 import ru.flish1.repository.UserRepository;
-import ru.flish1.repository.UserRoleRepository;
 
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -25,13 +23,13 @@ public class UserService implements UserDetailsService {
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
-    private final UserRoleRepository userRoleRepository;
+    private final ReferenceDataService referenceDataService;
     private final PasswordEncoder passwordEncoder;
 
-    public UserService(UserRepository userRepository, UserRoleRepository userRoleRepository,
+    public UserService(UserRepository userRepository, ReferenceDataService referenceDataService,
                        PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
-        this.userRoleRepository = userRoleRepository;
+        this.referenceDataService = referenceDataService;
         this.passwordEncoder = passwordEncoder;
     }
 
@@ -53,10 +51,11 @@ public class UserService implements UserDetailsService {
 
     /**
      * Создает пользователя
+     * Список инженеров в кэше справочников сбрасывается после коммита
      */
     @Transactional
     public User createUser(String login, String password, String fullName, String roleName) {
-        UserRole role = userRoleRepository.findByName(roleName)
+        UserRole role = referenceDataService.findRole(roleName)
                 .orElseThrow(() -> new IllegalArgumentException("Роль не найдена: " + roleName));
 
         User user = new User();
@@ -65,11 +64,9 @@ public class UserService implements UserDetailsService {
         user.setFullName(fullName);
         user.setRole(role);
 
-        return userRepository.save(user);
-    }
-
-    public List<User> findAllByRole(String roleName) {
-        return userRepository.findByRoleName(roleName);
+        User saved = userRepository.save(user);
+        referenceDataService.evictEngineersAfterCommit();
+        return saved;
     }
 
     /**
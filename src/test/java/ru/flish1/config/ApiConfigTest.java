@@ -0,0 +1,125 @@
+package ru.flish1.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пул соединений к API 1C: параллельные запросы к заглушке 1C (встроенный HTTP-сервер JDK) идут
+ * по переиспользуемым keep-alive соединениям, и все соединения возвращаются в пул
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ApiConfigTest {
+
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private PoolingHttpClientConnectionManager oneCConnectionManager;
+
+    @Value("${integration.api.pool.max-per-route}")
+    private int maxPerRoute;
+
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+
+    /**
+     * Клиентские порты принятых заглушкой запросов: один порт - одно TCP-соединение
+     */
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/buh/hs/integration/v1/ping", exchange -> {
+            connections.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubExecutor = Executors.newFixedThreadPool(THREADS * 2);
+        stub.setExecutor(stubExecutor);
+        stub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsReusePooledConnections() throws Exception {
+        runLoad(restTemplate);
+
+        // Все соединения вернулись в пул, а их число ограничено пулом, а не количеством запросов
+        assertThat(oneCConnectionManager.getTotalStats().getLeased()).isZero();
+        assertThat(connections).isNotEmpty().hasSizeLessThanOrEqualTo(Math.min(THREADS, maxPerRoute));
+    }
+
+    @Test
+    void clientWithoutReuseOpensConnectionPerRequest() throws Exception {
+        // Контроль подсчета соединений заглушкой: без переиспользования каждый запрос - новое соединение
+        try (CloseableHttpClient unpooled = HttpClients.custom()
+                .setConnectionReuseStrategy((request, response, context) -> false)
+                .build()) {
+            runLoad(new RestTemplate(new HttpComponentsClientHttpRequestFactory(unpooled)));
+        }
+        assertThat(connections).hasSize(THREADS * REQUESTS_PER_THREAD);
+    }
+
+    /**
+     * Выполняет THREADS * REQUESTS_PER_THREAD запросов из THREADS потоков
+     */
+    private void runLoad(RestTemplate client) throws Exception {
+        String url = "http://localhost:" + stub.getAddress().getPort() + "/buh/hs/integration/v1/ping";
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        assertThat(client.getForObject(url, String.class)).contains("success");
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.flish1.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flish1.entity.Part;
+import ru.flish1.entity.PartType;
+import ru.flish1.entity.Request;
+import ru.flish1.entity.ReservePart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сохранение резервирований и запчастей: ID из последовательностей с пулом, вставка пакетами JDBC.
+ * Чтение резервирований заявки вместе с запчастями одним запросом
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReservePartRepositoryTest {
+
+    private static final int ROWS = 120;
+
+    /**
+     * hibernate.jdbc.batch_size и allocationSize последовательностей
+     */
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private ReservePartRepository reservePartRepository;
+
+    @Autowired
+    private PartRepository partRepository;
+
+    @Autowired
+    private PartTypeRepository partTypeRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private PartType partType;
+    private Request request;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        partType = partTypeRepository.save(new PartType(null, "repository-test"));
+
+        request = new Request();
+        request.setCustomerId("+79120000000");
+        request.setAddress("ул. Складская, 1");
+        request.setStatus("in_progress");
+        request = requestRepository.save(request);
+    }
+
+    @Test
+    void insertsArePooledAndBatched() {
+        List<Part> parts = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            parts.add(new Part(null, "Запчасть " + i, "SKU-" + i, 5, 10.0, "шт", null, partType, null));
+        }
+
+        statistics.clear();
+        parts = partRepository.saveAll(parts);
+        long partStatements = statistics.getPrepareStatementCount();
+
+        List<ReservePart> reserveParts = new ArrayList<>();
+        for (Part part : parts) {
+            reserveParts.add(new ReservePart(null, request, part, 1, 0, "active", null));
+        }
+
+        statistics.clear();
+        reservePartRepository.saveAll(reserveParts);
+        long reserveStatements = statistics.getPrepareStatementCount();
+
+        // На каждую пачку из BATCH_SIZE строк - один INSERT и не больше одного обращения к последовательности
+        int batches = (ROWS + BATCH_SIZE - 1) / BATCH_SIZE;
+        assertThat(partStatements).isLessThanOrEqualTo(2L * batches + 1);
+        assertThat(reserveStatements).isLessThanOrEqualTo(2L * batches + 1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ROWS);
+        assertThat(reservePartRepository.findByRequestId(request.getId())).hasSize(ROWS);
+    }
+
+    @Test
+    void reservationsLoadWithPartsInOneQuery() {
+        List<ReservePart> reserveParts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            PartType type = partTypeRepository.save(new PartType(null, "repository-test-" + i));
+            Part part = partRepository.save(new Part(null, "Запчасть " + i, null, 5, 10.0, "шт", null, type, null));
+            reserveParts.add(new ReservePart(null, request, part, 1, 0, i % 2 == 0 ? "active" : "used", null));
+        }
+        reservePartRepository.saveAll(reserveParts);
+
+        // В транзакции, чтобы ленивые связи догружались, а не падали: догрузка попала бы в статистику
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            statistics.clear();
+            List<ReservePart> all = reservePartRepository.findByRequestId(request.getId());
+            assertThat(all).hasSize(10)
+                    .allSatisfy(rp -> assertThat(rp.getPart().getType().getName()).startsWith("repository-test-"));
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            statistics.clear();
+            List<ReservePart> active = reservePartRepository.findWithPartByRequestIdAndStatusIn(request.getId(),
+                    List.of("active"));
+            assertThat(active).hasSize(5).allSatisfy(rp -> assertThat(rp.getPart().getName()).startsWith("Запчасть"));
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package ru.flish1.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.flish1.dto.CatalogPartItem;
+import ru.flish1.entity.Part;
+import ru.flish1.entity.PartType;
+import ru.flish1.entity.Request;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.PartTypeRepository;
+import ru.flish1.repository.RequestRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Снимок каталога: резервирование обновляет остатки только затронутых запчастей без перестроения снимка
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogSnapshotServiceTest {
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private PartReservationService partReservationService;
+
+    @Autowired
+    private PartRepository partRepository;
+
+    @Autowired
+    private PartTypeRepository partTypeRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    private PartType partType;
+
+    @BeforeEach
+    void setUp() {
+        partType = partTypeRepository.save(new PartType(null, "snapshot-test"));
+    }
+
+    @Test
+    void reservationUpdatesOnlyReservedPartStock() {
+        Part reservedPart = createPart(10);
+        Part otherPart = createPart(7);
+        CatalogSnapshotService.CatalogSnapshot before = catalogSnapshotService.rebuild();
+
+        partReservationService.reserve(createRequest(), List.of(reservedPart.getId()), List.of(4), false);
+
+        CatalogSnapshotService.CatalogSnapshot after = catalogSnapshotService.getSnapshot();
+        assertThat(after.getVersion()).isEqualTo(before.getVersion() + 1);
+        assertThat(after.getPart(reservedPart.getId()).getQuantity()).isEqualTo(6);
+        assertThat(after.getPart(otherPart.getId())).isSameAs(before.getPart(otherPart.getId()));
+        assertThat(after.getParts()).hasSameSizeAs(before.getParts())
+                .filteredOn(p -> p.getId().equals(reservedPart.getId()))
+                .extracting(CatalogPartItem::getQuantity).containsExactly(6);
+        assertThat(after.getPartsOfType(partType.getId())).extracting(CatalogPartItem::getQuantity)
+                .containsExactlyInAnyOrder(6, 7);
+        // Снимок с новыми остатками соответствует БД: периодическая проверка его не перестраивает
+        catalogSnapshotService.rebuildIfChanged();
+        assertThat(catalogSnapshotService.getSnapshot()).isSameAs(after);
+    }
+
+    private Part createPart(int quantity) {
+        return partRepository.save(new Part(null, "Запчасть", null, quantity, 100.0, "шт", null, partType, null));
+    }
+
+    private Request createRequest() {
+        Request request = new Request();
+        request.setCustomerId("+79140000000");
+        request.setAddress("ул. Каталожная, 1");
+        request.setStatus("in_progress");
+        return requestRepository.save(request);
+    }
+}
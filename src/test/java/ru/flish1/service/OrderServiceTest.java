@@ -0,0 +1,278 @@
+package ru.flish1.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+import ru.flish1.client.OneCApiClient;
+import ru.flish1.controller.RequestController;
+import ru.flish1.dto.CompletedOrderPayload;
+import ru.flish1.dto.PaymentStatusResponse;
+import ru.flish1.dto.SuccessResponse;
+import ru.flish1.entity.OrderOutbox;
+import ru.flish1.entity.Part;
+import ru.flish1.entity.PartType;
+import ru.flish1.entity.Request;
+import ru.flish1.entity.ReservePart;
+import ru.flish1.entity.ServiceEntity;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.PartTypeRepository;
+import ru.flish1.repository.RequestRepository;
+import ru.flish1.repository.ReservePartRepository;
+import ru.flish1.repository.ServiceRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Сборка заказа для 1C: число запросов к БД не зависит от количества строк заказа
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderServiceTest {
+
+    @MockBean
+    private OneCApiClient oneCApiClient;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private ServiceRepository serviceRepository;
+
+    @Autowired
+    private PartRepository partRepository;
+
+    @Autowired
+    private PartTypeRepository partTypeRepository;
+
+    @Autowired
+    private ReservePartRepository reservePartRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private RequestController requestController;
+
+    @Autowired
+    private PartReservationService partReservationService;
+
+    @Autowired
+    private OrderOutboxDispatcher orderOutboxDispatcher;
+
+    private Statistics statistics;
+    private PartType partType;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        partType = partTypeRepository.save(new PartType(null, "order-test"));
+        // ID документа не возвращается, поэтому этап сохранения результата не выполняется
+        when(oneCApiClient.sendCompletedOrder(any())).thenReturn(new SuccessResponse(null, "N-1", "ok"));
+    }
+
+    @Test
+    void orderAssemblyQueryCountDoesNotDependOnLineCount() {
+        OrderLines single = createRequestWithLines(1);
+        OrderLines many = createRequestWithLines(30);
+
+        long singleStatements = countStatements(single);
+        long manyStatements = countStatements(many);
+
+        // Заявка, клиент, услуги, материалы и резервирования с запчастями - по одному запросу
+        assertThat(singleStatements).isBetween(1L, 5L);
+        assertThat(manyStatements).isEqualTo(singleStatements);
+    }
+
+    @Test
+    void orderContainsServicesMaterialsAndUsedReservations() {
+        OrderLines lines = createRequestWithLines(3);
+
+        clearInvocations(oneCApiClient);
+        assertThat(send(lines).isSuccess()).isTrue();
+
+        ArgumentCaptor<CompletedOrderPayload> payload = ArgumentCaptor.forClass(CompletedOrderPayload.class);
+        verify(oneCApiClient).sendCompletedOrder(payload.capture());
+        assertThat(payload.getValue().getServices()).hasSize(3);
+        // Материалы из формы и использованные запчасти из резервирований
+        assertThat(payload.getValue().getMaterials()).hasSize(6);
+    }
+
+    @Test
+    void noConnectionIsHeldWhileWaitingForOneC() throws Exception {
+        int concurrentOrders = dataSource.getMaximumPoolSize() * 2;
+        List<OrderLines> orders = new ArrayList<>();
+        for (int i = 0; i < concurrentOrders; i++) {
+            orders.add(createRequestWithLines(2));
+        }
+
+        // Ответ 1C задерживается, пока все заказы не окажутся в ожидании 1C одновременно. Заказов вдвое больше,
+        // чем соединений в пуле: если бы ожидание 1C удерживало соединение, часть заказов не дошла бы до 1C
+        CountDownLatch allWaiting = new CountDownLatch(concurrentOrders);
+        AtomicInteger activeWhileAllWaiting = new AtomicInteger(-1);
+        when(oneCApiClient.sendCompletedOrder(any())).thenAnswer(invocation -> {
+            allWaiting.countDown();
+            if (!allWaiting.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Не все заказы дошли до вызова 1C");
+            }
+            activeWhileAllWaiting.compareAndSet(-1, dataSource.getHikariPoolMXBean().getActiveConnections());
+            return new SuccessResponse(null, "N-1", "ok");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentOrders);
+        try {
+            List<Future<OrderService.OrderResult>> results = new ArrayList<>();
+            for (OrderLines order : orders) {
+                results.add(executor.submit(() -> send(order)));
+            }
+            for (Future<OrderService.OrderResult> result : results) {
+                assertThat(result.get(90, TimeUnit.SECONDS).isSuccess()).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(activeWhileAllWaiting.get()).isZero();
+    }
+
+    @Test
+    void completionClosesReservationsAndReturnsUnusedStock() {
+        OrderLines lines = createRequestWithLines(1);
+        Integer requestId = lines.request.getId();
+        Part part = partRepository.save(new Part(null, "Картридж", null, 10, 80.0, "шт", "part-completion", partType, null));
+        ReservePart reserved = partReservationService.reserve(lines.request, List.of(part.getId()), List.of(4), false).get(0);
+        reserved.setUsedQuantity(3);
+        reservePartRepository.save(reserved);
+
+        OrderOutbox outbox = orderService.completeRequestWithOrder(requestId, "SRC-" + requestId, lines.serviceIds,
+                Collections.nCopies(lines.serviceIds.size(), 1.0), "card");
+
+        // Использованные 3 шт. ушли в заказ, неиспользованная 1 шт. вернулась на склад
+        assertThat(outbox.getPayload()).contains("part-completion");
+        assertThat(partRepository.findById(part.getId()).orElseThrow().getQuantity()).isEqualTo(7);
+        assertThat(reservePartRepository.findById(reserved.getId()).orElseThrow().getStatus()).isEqualTo("used");
+        assertThat(partReservationService.getReservedQuantities()).doesNotContainKey(part.getId());
+    }
+
+    @Test
+    void cashConfirmationBeforeDispatchReachesOneCAfterOrderIsSent() {
+        OrderLines lines = createRequestWithLines(1);
+        Integer requestId = lines.request.getId();
+        orderService.completeRequestWithOrder(requestId, "SRC-" + requestId, lines.serviceIds,
+                Collections.nCopies(lines.serviceIds.size(), 1.0), "cash");
+
+        // Заказ еще в очереди: документа 1С нет, подтверждение откладывается
+        clearInvocations(oneCApiClient);
+        RedirectAttributesModelMap redirectAttributes = new RedirectAttributesModelMap();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "engineer1", null, List.of(new SimpleGrantedAuthority("ROLE_ENGINEER"))));
+        try {
+            requestController.confirmCashPayment(requestId, redirectAttributes);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        assertThat((String) redirectAttributes.getFlashAttributes().get("successMessage"))
+                .contains("ещё не передан в 1С");
+        verify(oneCApiClient, never()).confirmCashPayment(anyString());
+        assertThat(requestRepository.findById(requestId).orElseThrow().getCashConfirmationPending()).isTrue();
+
+        String documentId = "DOC-CASH-" + requestId;
+        when(oneCApiClient.sendCompletedOrder(any())).thenReturn(new SuccessResponse(documentId, "N-1", "ok"));
+        when(oneCApiClient.confirmCashPayment(documentId))
+                .thenReturn(new PaymentStatusResponse(documentId, true, null, "cash", "ok"));
+        orderOutboxDispatcher.dispatchPending();
+
+        verify(oneCApiClient).confirmCashPayment(documentId);
+        Request request = requestRepository.findById(requestId).orElseThrow();
+        assertThat(request.getDocument1cId()).isEqualTo(documentId);
+        assertThat(request.getStatus()).isEqualTo("paid");
+        assertThat(request.getCashConfirmationPending()).isNull();
+    }
+
+    private long countStatements(OrderLines lines) {
+        statistics.clear();
+        assertThat(send(lines).isSuccess()).isTrue();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private OrderService.OrderResult send(OrderLines lines) {
+        return orderService.createAndSendOrderFromRequest(lines.request.getId(), "SRC-" + lines.request.getId(),
+                lines.serviceIds, Collections.nCopies(lines.serviceIds.size(), 1.0),
+                lines.materialIds, Collections.nCopies(lines.materialIds.size(), 1.0), "cash");
+    }
+
+    /**
+     * Заявка в работе с count услугами, count материалами и count использованными резервированиями
+     */
+    private OrderLines createRequestWithLines(int count) {
+        Request request = new Request();
+        request.setCustomerId("+7900" + System.nanoTime() % 10_000_000);
+        request.setAddress("ул. Тестовая, 1");
+        request.setStatus("in_progress");
+        request = requestRepository.save(request);
+
+        List<ServiceEntity> services = new ArrayList<>();
+        List<Part> parts = new ArrayList<>();
+        for (int i = 0; i < 2 * count; i++) {
+            if (i < count) {
+                services.add(new ServiceEntity(null, "Услуга " + i, null, 100.0, "шт", "svc-" + i, null));
+            }
+            parts.add(new Part(null, "Запчасть " + i, null, 10, 50.0, "шт", "part-" + i, partType, null));
+        }
+        services = serviceRepository.saveAll(services);
+        parts = partRepository.saveAll(parts);
+
+        OrderLines lines = new OrderLines(request);
+        List<ReservePart> reserveParts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.serviceIds.add(services.get(i).getId());
+            lines.materialIds.add(parts.get(i).getId());
+            reserveParts.add(new ReservePart(null, request, parts.get(count + i), 1, 1, "active", null));
+        }
+        reservePartRepository.saveAll(reserveParts);
+        return lines;
+    }
+
+    private static class OrderLines {
+        private final Request request;
+        private final List<Integer> serviceIds = new ArrayList<>();
+        private final List<Integer> materialIds = new ArrayList<>();
+
+        OrderLines(Request request) {
+            this.request = request;
+        }
+    }
+}
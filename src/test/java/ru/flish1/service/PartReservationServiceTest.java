@@ -0,0 +1,168 @@
+package ru.flish1.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.flish1.config.ReservationStockMigration;
+import ru.flish1.entity.Part;
+import ru.flish1.entity.PartType;
+import ru.flish1.entity.Request;
+import ru.flish1.entity.ReservePart;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.PartTypeRepository;
+import ru.flish1.repository.RequestRepository;
+import ru.flish1.repository.ReservePartRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Резервирование запчастей: при одновременных резервах последних единиц остаток не уходит в минус
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PartReservationServiceTest {
+
+    private static final int STOCK = 5;
+    private static final int THREADS = 24;
+
+    @Autowired
+    private PartReservationService partReservationService;
+
+    @Autowired
+    private ReservationStockMigration reservationStockMigration;
+
+    @Autowired
+    private PartRepository partRepository;
+
+    @Autowired
+    private PartTypeRepository partTypeRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private ReservePartRepository reservePartRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private PartType partType;
+
+    @BeforeEach
+    void setUp() {
+        partType = partTypeRepository.save(new PartType(null, "reservation-test"));
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        Part part = createPart(STOCK);
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            requests.add(createRequest());
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (Request request : requests) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        partReservationService.reserve(request, List.of(part.getId()), List.of(1), false);
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        // Отказом считается только нехватка остатка; любая другая ошибка проваливает тест
+                        if (e.getMessage() == null || !e.getMessage().startsWith("Недостаточно")) {
+                            throw e;
+                        }
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(60, TimeUnit.SECONDS)) {
+                    reserved++;
+                }
+            }
+
+            int remaining = partRepository.findById(part.getId()).orElseThrow().getQuantity();
+            assertThat(reserved).isEqualTo(STOCK);
+            assertThat(remaining).isZero();
+            assertThat(partReservationService.getReservedQuantities().get(part.getId())).isEqualTo((long) STOCK);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void releaseReturnsReservedStock() {
+        Part part = createPart(STOCK);
+        Request request = createRequest();
+
+        List<ReservePart> reserved = partReservationService.reserve(request, List.of(part.getId()), List.of(3), false);
+        assertThat(partRepository.findById(part.getId()).orElseThrow().getQuantity()).isEqualTo(STOCK - 3);
+
+        partReservationService.release(List.of(reserved.get(0).getId()));
+        assertThat(partRepository.findById(part.getId()).orElseThrow().getQuantity()).isEqualTo(STOCK);
+    }
+
+    @Test
+    void releaseOfSweptReservationDoesNotReturnStockTwice() {
+        Part part = createPart(STOCK);
+        Request request = createRequest();
+        List<ReservePart> reserved = partReservationService.reserve(request, List.of(part.getId()), List.of(3), false);
+
+        // Резерв закрыт ReservationSweeper между чтением и удалением в release: количество уже возвращено
+        jdbcTemplate.update("UPDATE reserve_parts SET status = 'closed' WHERE id = ?", reserved.get(0).getId());
+        jdbcTemplate.update("UPDATE parts SET quantity = quantity + 3 WHERE id = ?", part.getId());
+
+        partReservationService.release(List.of(reserved.get(0).getId()));
+        assertThat(partRepository.findById(part.getId()).orElseThrow().getQuantity()).isEqualTo(STOCK);
+        assertThat(reservePartRepository.findById(reserved.get(0).getId())).isEmpty();
+    }
+
+    @Test
+    void legacyReservationsAreDeductedFromStockOnce() {
+        Part part = createPart(STOCK);
+        Request request = createRequest();
+        // Резерв, созданный до списания остатка при резервировании: stock_reserved пустой
+        ReservePart legacy = reservePartRepository.save(new ReservePart(null, request, part, 2, 0, "active", null));
+
+        reservationStockMigration.migrateLegacyReservations();
+        reservationStockMigration.migrateLegacyReservations();
+        assertThat(partRepository.findById(part.getId()).orElseThrow().getQuantity()).isEqualTo(STOCK - 2);
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_reserved FROM reserve_parts WHERE id = ?",
+                Boolean.class, legacy.getId())).isTrue();
+
+        // Снятие старого резерва возвращает ровно то, что было вычтено при переводе
+        partReservationService.release(List.of(legacy.getId()));
+        assertThat(partRepository.findById(part.getId()).orElseThrow().getQuantity()).isEqualTo(STOCK);
+    }
+
+    private Part createPart(int quantity) {
+        return partRepository.save(new Part(null, "Запчасть", null, quantity, 100.0, "шт", null, partType, null));
+    }
+
+    private Request createRequest() {
+        Request request = new Request();
+        request.setCustomerId("+79130000000");
+        request.setAddress("ул. Резервная, 1");
+        request.setStatus("in_progress");
+        return requestRepository.save(request);
+    }
+}
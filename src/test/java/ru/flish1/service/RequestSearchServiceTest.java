@@ -0,0 +1,100 @@
+package ru.flish1.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.flish1.entity.Request;
+import ru.flish1.repository.RequestRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Полнотекстовый поиск заявок: номер страницы за пределами результатов не переполняет глубину выборки,
+ * а найденные заявки выбираются одной проекцией без загрузки сущностей
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestSearchServiceTest {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private RequestSearchService requestSearchService;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${integration.search.lag:PT5S}")
+    private Duration lag;
+
+    private Statistics statistics;
+    private List<Request> requests;
+
+    /**
+     * Слово, которое есть только в заявках текущего теста: контекст и индекс общие для всех тестов класса
+     */
+    private String marker;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        marker = "партия" + System.nanoTime();
+
+        requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Request request = new Request();
+            request.setCustomerId("+7916000" + i);
+            request.setAddress("ул. Поисковая, " + i);
+            request.setStatus("new");
+            request.setProblemDescription("Трещина барабана, " + marker + ", случай " + i);
+            requests.add(request);
+        }
+        requests = requestRepository.saveAll(requests);
+        // Без задержки индексации только что сохраненные заявки попадают в индекс сразу
+        ReflectionTestUtils.setField(requestSearchService, "lag", Duration.ZERO);
+        requestSearchService.indexChanges();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(requestSearchService, "lag", lag);
+    }
+
+    @Test
+    void pageBeyondResultsIsClampedToLastPage() {
+        RequestSearchService.SearchPage result = requestSearchService.search("трещина " + marker, Integer.MAX_VALUE, PAGE_SIZE);
+
+        assertThat(result.getTotal()).isEqualTo(requests.size());
+        assertThat(result.getPage()).isEqualTo((requests.size() - 1) / PAGE_SIZE);
+        assertThat(result.getHits()).hasSize(1);
+        assertThat(result.isHasNext()).isFalse();
+        assertThat(result.isHasPrev()).isTrue();
+    }
+
+    @Test
+    void hitsAreLoadedAsListItemsInOneQuery() {
+        statistics.clear();
+        RequestSearchService.SearchPage result = requestSearchService.search("трещина " + marker, 0, PAGE_SIZE);
+
+        assertThat(result.getHits()).hasSize(PAGE_SIZE);
+        assertThat(result.getHits().get(0).getRequest().getAddress()).startsWith("ул. Поисковая");
+        assertThat(result.getHits().get(0).getRequest().getProblemPreview()).startsWith("Трещина барабана");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
@@ -0,0 +1,106 @@
+package ru.flish1.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.flish1.dto.RequestFilter;
+import ru.flish1.dto.RequestListItem;
+import ru.flish1.entity.EquipmentType;
+import ru.flish1.entity.Request;
+import ru.flish1.entity.User;
+import ru.flish1.repository.EquipmentTypeRepository;
+import ru.flish1.repository.RequestRepository;
+import ru.flish1.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Список и карточка заявки: число запросов к БД не зависит от количества заявок на странице
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestServiceTest {
+
+    @Autowired
+    private RequestService requestService;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EquipmentTypeRepository equipmentTypeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User engineer;
+    private EquipmentType equipmentType;
+    private List<Request> requests;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        engineer = userRepository.findByLogin("engineer1").orElseThrow();
+        equipmentType = equipmentTypeRepository.findAll().get(0);
+
+        requests = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Request request = new Request();
+            request.setCustomerId("+7911000" + i);
+            request.setAddress("ул. Списочная, " + i);
+            request.setStatus("assigned");
+            request.setEngineer(engineer);
+            request.setEquipmentType(equipmentType);
+            request.setProblemDescription("Не включается, попытка " + i);
+            requests.add(request);
+        }
+        requests = requestRepository.saveAll(requests);
+    }
+
+    @Test
+    void requestPageRunsOneQueryRegardlessOfPageSize() {
+        RequestFilter filter = new RequestFilter();
+        filter.setEngineerId(engineer.getId());
+
+        statistics.clear();
+        List<RequestListItem> small = requestService.getRequestPage(filter, null, null, 5).getItems();
+        long smallStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        List<RequestListItem> large = requestService.getRequestPage(filter, null, null, 30).getItems();
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        assertThat(small).hasSize(5);
+        assertThat(large).hasSize(30);
+        // Инженер и тип оборудования выбираются в той же проекции, без догрузки по строкам
+        assertThat(large.get(0).getEngineerName()).isEqualTo(engineer.getFullName());
+        assertThat(smallStatements).isEqualTo(1);
+        assertThat(largeStatements).isEqualTo(smallStatements);
+    }
+
+    @Test
+    void requestViewLoadsEngineerAndEquipmentTypeInOneQuery() {
+        Integer id = requests.get(0).getId();
+
+        statistics.clear();
+        Request request = requestService.getRequestById(id).orElseThrow();
+        String engineerName = request.getEngineer() != null ? request.getEngineer().getFullName() : null;
+        String equipmentTypeName = request.getEquipmentType() != null ? request.getEquipmentType().getName() : null;
+
+        assertThat(engineerName).isNotNull();
+        assertThat(equipmentTypeName).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.flish1.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.flish1.client.OneCApiClient;
+import ru.flish1.dto.NomenclatureDto;
+import ru.flish1.entity.Part;
+import ru.flish1.entity.PartType;
+import ru.flish1.entity.Request;
+import ru.flish1.repository.PartRepository;
+import ru.flish1.repository.PartTypeRepository;
+import ru.flish1.repository.RequestRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+/**
+ * Синхронизация номенклатуры: пачка не сохраняется, если аренда блокировки синхронизации потеряна,
+ * и обновление запчасти из 1С не перезаписывает остаток, списанный резервированием во время обработки пачки
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SyncJobServiceTest {
+
+    @MockBean
+    private OneCApiClient oneCApiClient;
+
+    @Autowired
+    private SyncJobService syncJobService;
+
+    @SpyBean
+    private PartRepository partRepository;
+
+    @Autowired
+    private PartTypeRepository partTypeRepository;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private PartReservationService partReservationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void chunkIsRolledBackWhenLockLeaseIsLost() throws Exception {
+        when(oneCApiClient.streamNomenclature(any(), anyInt(), any())).thenAnswer(invocation -> {
+            OneCApiClient.NomenclatureStreamHandler handler = invocation.getArgument(2);
+            handler.onStart("lease-test", 2);
+            handler.onChunk(List.of(new NomenclatureDto("lease-1", "Фильтр", "LEASE-1", "part", "шт", 10.0)));
+
+            // Аренда истекла, и блокировку захватил другой узел
+            jdbcTemplate.update("UPDATE scheduler_locks SET locked_by = 'other-node', locked_until = ? WHERE name = ?",
+                    LocalDateTime.now().plusHours(1), SyncJobService.NOMENCLATURE_SYNC_LOCK);
+            handler.onChunk(List.of(new NomenclatureDto("lease-2", "Ремень", "LEASE-2", "part", "шт", 20.0)));
+            return new OneCApiClient.NomenclatureStreamResult(false, "lease-test", 2);
+        });
+
+        try {
+            SyncJob job = syncJobService.startNomenclatureSync("test");
+            for (int i = 0; i < 600 && job.isRunning(); i++) {
+                Thread.sleep(100);
+            }
+
+            assertThat(job.getStatus()).isEqualTo(SyncJob.Status.FAILED);
+            assertThat(partRepository.findByNomenclatureIdIn(List.of("lease-1"))).hasSize(1);
+            assertThat(partRepository.findByNomenclatureIdIn(List.of("lease-2"))).isEmpty();
+        } finally {
+            jdbcTemplate.update("UPDATE scheduler_locks SET locked_by = NULL, locked_until = ? WHERE name = ?",
+                    LocalDateTime.now().minusSeconds(1), SyncJobService.NOMENCLATURE_SYNC_LOCK);
+        }
+    }
+
+    @Test
+    void syncChunkDoesNotOverwriteStockReservedDuringChunk() throws Exception {
+        PartType type = partTypeRepository.save(new PartType(null, "sync-race-test"));
+        Part part = partRepository.save(new Part(null, "Фильтр", "RACE-1", 10, 100.0, "шт", "race-1", type, null));
+        Request request = new Request();
+        request.setCustomerId("+79150000000");
+        request.setAddress("ул. Синхронная, 1");
+        request.setStatus("in_progress");
+        Request savedRequest = requestRepository.save(request);
+
+        // Пачка уже загрузила запчасть, но еще не сохранила: в этот момент другая транзакция резервирует 3 шт.
+        // Репозиторий - прокси интерфейса: шпион передает вызовы исходному бину через ответ по умолчанию
+        Answer<?> repository = mockingDetails(partRepository).getMockCreationSettings().getDefaultAnswer();
+        doAnswer(invocation -> {
+            Object loaded = repository.answer(invocation);
+            Collection<String> ids = invocation.getArgument(0);
+            if (ids.contains("race-1")) {
+                CompletableFuture.runAsync(() -> partReservationService.reserve(savedRequest,
+                        List.of(part.getId()), List.of(3), false)).get(30, TimeUnit.SECONDS);
+            }
+            return loaded;
+        }).when(partRepository).findByNomenclatureIdIn(anyCollection());
+        when(oneCApiClient.streamNomenclature(any(), anyInt(), any())).thenAnswer(invocation -> {
+            OneCApiClient.NomenclatureStreamHandler handler = invocation.getArgument(2);
+            handler.onStart("race-test", 1);
+            handler.onChunk(List.of(new NomenclatureDto("race-1", "Фильтр новый", "RACE-1", "part", "шт", 120.0)));
+            return new OneCApiClient.NomenclatureStreamResult(false, "race-test", 1);
+        });
+
+        SyncJob job = syncJobService.startNomenclatureSync("test");
+        for (int i = 0; i < 600 && job.isRunning(); i++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.COMPLETED);
+        Part synced = partRepository.findById(part.getId()).orElseThrow();
+        assertThat(synced.getName()).isEqualTo("Фильтр новый");
+        assertThat(synced.getPrice()).isEqualTo(120.0);
+        assertThat(synced.getQuantity()).isEqualTo(7);
+    }
+}